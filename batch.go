@@ -0,0 +1,137 @@
+package crocon
+
+/*
+#include <stdlib.h>
+#include "crocon.h"
+*/
+import "C"
+
+import (
+	"encoding/base64"
+	"fmt"
+	"time"
+	"unsafe"
+)
+
+// DefaultMaxBatch is the largest number of queued requests an isolate
+// converts in a single native call by default.
+const DefaultMaxBatch = 64
+
+// batchItem describes a request that can be converted as part of a batch.
+type batchItem struct {
+	kind Kind
+	req  ConversionRequest
+	// data is the encoded request data, without its root header.
+	data []byte
+}
+
+// collectBatch drains requests queued for an isolate behind first, up to the
+// converter's batch size and, if set, waiting at most its batch window for
+// more to arrive. Requests that cannot be batched are returned separately, to
+// be executed after the batch so they do not delay the requests ahead of them.
+// Under light load this returns just first, so batching only kicks in as the
+// queue grows.
+func (c *Converter) collectBatch(w *isolateWorker, first conversionRequest) (batch, deferred []conversionRequest) {
+	batch = []conversionRequest{first}
+
+	var window <-chan time.Time
+	if c.batchWindow > 0 {
+		timer := time.NewTimer(c.batchWindow)
+		defer timer.Stop()
+		window = timer.C
+	}
+
+	for len(batch) < c.maxBatch {
+		var req conversionRequest
+		select {
+		case req = <-w.requests:
+		case req = <-c.shared:
+		default:
+			if window == nil {
+				return batch, deferred
+			}
+			select {
+			case req = <-w.requests:
+			case req = <-c.shared:
+			case <-window:
+				return batch, deferred
+			}
+		}
+
+		if req.batch == nil {
+			deferred = append(deferred, req)
+		} else {
+			batch = append(batch, req)
+		}
+	}
+	return batch, deferred
+}
+
+// executeBatch converts the collected requests with one convert_batch call per
+// version pair and fans the results back out to each caller. A version pair
+// with a single request is converted on its own.
+func (c *Converter) executeBatch(thread *C.graal_isolatethread_t, batch []conversionRequest) {
+	if len(batch) == 1 {
+		batch[0].execute(thread)
+		return
+	}
+
+	type versionPair struct{ from, to string }
+	var order []versionPair
+	groups := make(map[versionPair][]conversionRequest)
+	for _, req := range batch {
+		pair := versionPair{req.batch.req.FromVersion, req.batch.req.ToVersion}
+		if _, ok := groups[pair]; !ok {
+			order = append(order, pair)
+		}
+		groups[pair] = append(groups[pair], req)
+	}
+
+	for _, pair := range order {
+		group := groups[pair]
+		if len(group) == 1 {
+			group[0].execute(thread)
+			continue
+		}
+
+		results, err := convertBatch(thread, group)
+		if err != nil {
+			// Fall back to converting each request on its own.
+			for _, req := range group {
+				req.execute(thread)
+			}
+			continue
+		}
+		for i, req := range group {
+			req.responseChan <- conversionResponse{result: results[i]}
+		}
+	}
+}
+
+// convertBatch converts requests for a single version pair with one call to
+// convert_batch and returns each request's response envelope.
+func convertBatch(thread *C.graal_isolatethread_t, group []conversionRequest) ([][]byte, error) {
+	items := make([]*batchItem, len(group))
+	for i, req := range group {
+		items[i] = req.batch
+	}
+
+	input, err := encodeBatch(items)
+	if err != nil {
+		return nil, fmt.Errorf("failed to marshal batch to Bedrock NBT: %w", err)
+	}
+	cInput := C.CString(base64.StdEncoding.EncodeToString(input))
+	defer C.free(unsafe.Pointer(cInput))
+
+	cResult := C.convert_batch(thread, cInput)
+	if cResult == nil {
+		return nil, fmt.Errorf("cgo call to convert_batch returned a null pointer")
+	}
+	defer C.free_result(thread, cResult)
+
+	payload, err := base64.StdEncoding.DecodeString(C.GoString(cResult))
+	if err != nil {
+		return nil, fmt.Errorf("failed to base64-decode response from library: %w", err)
+	}
+	return splitBatchResponse(payload, len(items))
+}
@@ -0,0 +1,421 @@
+package crocon
+
+import (
+	"container/list"
+	"encoding/binary"
+	"fmt"
+	"math"
+	"reflect"
+	"slices"
+	"strings"
+	"sync"
+)
+
+// cacheKey is the canonical encoding of a conversion request. Keys are compared
+// in full, so two different requests can never share a cache entry.
+type cacheKey string
+
+// cacheEntry is a single cached result. value is either the decoded result
+// pointer or the *ConversionError returned for the request.
+type cacheEntry struct {
+	key   cacheKey
+	value any
+}
+
+// resultCache is a size-bounded LRU cache of decoded conversion results.
+type resultCache struct {
+	mu        sync.Mutex
+	capacity  int
+	order     *list.List
+	entries   map[cacheKey]*list.Element
+	hits      uint64
+	misses    uint64
+	evictions uint64
+}
+
+func newResultCache(capacity int) *resultCache {
+	return &resultCache{
+		capacity: capacity,
+		order:    list.New(),
+		entries:  make(map[cacheKey]*list.Element, capacity),
+	}
+}
+
+// get returns the cached value for key and marks it as recently used.
+func (rc *resultCache) get(key cacheKey) (any, bool) {
+	rc.mu.Lock()
+	defer rc.mu.Unlock()
+
+	elem, ok := rc.entries[key]
+	if !ok {
+		rc.misses++
+		return nil, false
+	}
+	rc.hits++
+	rc.order.MoveToFront(elem)
+	return elem.Value.(*cacheEntry).value, true
+}
+
+// put stores value under key, evicting the least recently used entry if the
+// cache is full.
+func (rc *resultCache) put(key cacheKey, value any) {
+	rc.mu.Lock()
+	defer rc.mu.Unlock()
+
+	if elem, ok := rc.entries[key]; ok {
+		elem.Value.(*cacheEntry).value = value
+		rc.order.MoveToFront(elem)
+		return
+	}
+	if rc.order.Len() >= rc.capacity {
+		oldest := rc.order.Back()
+		rc.order.Remove(oldest)
+		delete(rc.entries, oldest.Value.(*cacheEntry).key)
+		rc.evictions++
+	}
+	rc.entries[key] = rc.order.PushFront(&cacheEntry{key: key, value: value})
+}
+
+func (rc *resultCache) stats() ResultCacheStats {
+	rc.mu.Lock()
+	defer rc.mu.Unlock()
+
+	return ResultCacheStats{
+		Hits:      rc.hits,
+		Misses:    rc.misses,
+		Evictions: rc.evictions,
+		Entries:   rc.order.Len(),
+		Capacity:  rc.capacity,
+	}
+}
+
+// --- In-Flight Coalescing ---
+
+// flight is a conversion in progress that identical requests can wait on.
+type flight struct {
+	done      chan struct{}
+	value     any
+	followers int
+}
+
+// flightGroup tracks in-flight conversions by request key.
+type flightGroup struct {
+	mu      sync.Mutex
+	flights map[cacheKey]*flight
+}
+
+// join returns the in-flight conversion for key, or starts a new one if there
+// is none. The caller that starts it is the leader and must call finish.
+func (g *flightGroup) join(key cacheKey) (*flight, bool) {
+	g.mu.Lock()
+	defer g.mu.Unlock()
+
+	if f, ok := g.flights[key]; ok {
+		f.followers++
+		return f, false
+	}
+	if g.flights == nil {
+		g.flights = make(map[cacheKey]*flight)
+	}
+	f := &flight{done: make(chan struct{})}
+	g.flights[key] = f
+	return f, true
+}
+
+// finish publishes the result of a flight to its followers and returns how
+// many there were.
+func (g *flightGroup) finish(key cacheKey, f *flight, value any) int {
+	g.mu.Lock()
+	delete(g.flights, key)
+	followers := f.followers
+	g.mu.Unlock()
+
+	f.value = value
+	close(f.done)
+	return followers
+}
+
+// --- Canonical Request Encoding ---
+
+// Type tags written before each encoded value so that, for example, the
+// string "1" and the int32 1 never encode the same.
+const (
+	tagNil byte = iota
+	tagBool
+	tagInt8
+	tagInt16
+	tagInt32
+	tagInt64
+	tagUint
+	tagFloat32
+	tagFloat64
+	tagString
+	tagBytes
+	tagInt32s
+	tagInt64s
+	tagList
+	tagMap
+	tagStruct
+)
+
+// requestKey encodes a request into a cache key. Maps are encoded with their
+// keys sorted, so two requests that differ only in map iteration order share
+// a key.
+func requestKey(kind Kind, req ConversionRequest, data any) cacheKey {
+	var e keyEncoder
+	e.string(string(kind))
+	e.string(req.FromVersion)
+	e.string(req.ToVersion)
+	e.string(string(req.FromEdition))
+	e.string(string(req.ToEdition))
+	e.value(data)
+	return cacheKey(e.buf)
+}
+
+// keyEncoder builds the canonical encoding of a request. The encoding is used
+// as the key itself rather than digested, so lookups cannot be fooled by a
+// crafted hash collision.
+type keyEncoder struct {
+	buf []byte
+}
+
+func (e *keyEncoder) tag(t byte) {
+	e.buf = append(e.buf, t)
+}
+
+func (e *keyEncoder) uint64(v uint64) {
+	e.buf = binary.LittleEndian.AppendUint64(e.buf, v)
+}
+
+func (e *keyEncoder) string(s string) {
+	e.uint64(uint64(len(s)))
+	e.buf = append(e.buf, s...)
+}
+
+func (e *keyEncoder) value(v any) {
+	switch v := v.(type) {
+	case nil:
+		e.tag(tagNil)
+	case bool:
+		e.tag(tagBool)
+		if v {
+			e.uint64(1)
+		} else {
+			e.uint64(0)
+		}
+	case int8:
+		e.tag(tagInt8)
+		e.uint64(uint64(v))
+	case uint8:
+		e.tag(tagInt8)
+		e.uint64(uint64(int8(v)))
+	case int16:
+		e.tag(tagInt16)
+		e.uint64(uint64(v))
+	case int32:
+		e.tag(tagInt32)
+		e.uint64(uint64(v))
+	case int64:
+		e.tag(tagInt64)
+		e.uint64(uint64(v))
+	case int:
+		e.tag(tagInt64)
+		e.uint64(uint64(v))
+	case float32:
+		e.tag(tagFloat32)
+		e.uint64(uint64(math.Float32bits(v)))
+	case float64:
+		e.tag(tagFloat64)
+		e.uint64(math.Float64bits(v))
+	case string:
+		e.tag(tagString)
+		e.string(v)
+	case []byte:
+		e.tag(tagBytes)
+		e.uint64(uint64(len(v)))
+		e.buf = append(e.buf, v...)
+	case []int32:
+		e.tag(tagInt32s)
+		e.uint64(uint64(len(v)))
+		for _, x := range v {
+			e.uint64(uint64(x))
+		}
+	case []int64:
+		e.tag(tagInt64s)
+		e.uint64(uint64(len(v)))
+		for _, x := range v {
+			e.uint64(uint64(x))
+		}
+	case []any:
+		e.tag(tagList)
+		e.uint64(uint64(len(v)))
+		for _, x := range v {
+			e.value(x)
+		}
+	case map[string]any:
+		e.stringMap(v)
+	case Item:
+		e.stringMap(v)
+	case Entity:
+		e.stringMap(v)
+	case BlockEntity:
+		e.stringMap(v)
+	case Block:
+		e.tag(tagStruct)
+		e.string(v.ID)
+		e.stringMap(v.States)
+	default:
+		e.reflect(reflect.ValueOf(v))
+	}
+}
+
+func (e *keyEncoder) stringMap(m map[string]any) {
+	e.tag(tagMap)
+	e.uint64(uint64(len(m)))
+	keys := make([]string, 0, len(m))
+	for k := range m {
+		keys = append(keys, k)
+	}
+	slices.Sort(keys)
+	for _, k := range keys {
+		e.string(k)
+		e.value(m[k])
+	}
+}
+
+// reflect encodes values the type switch does not cover, such as maps and
+// slices of concrete types or caller-defined structs.
+func (e *keyEncoder) reflect(v reflect.Value) {
+	switch v.Kind() {
+	case reflect.Invalid:
+		e.tag(tagNil)
+	case reflect.Pointer, reflect.Interface:
+		if v.IsNil() {
+			e.tag(tagNil)
+			return
+		}
+		e.reflect(v.Elem())
+	case reflect.Bool:
+		e.value(v.Bool())
+	case reflect.Int8:
+		e.value(int8(v.Int()))
+	case reflect.Int16:
+		e.value(int16(v.Int()))
+	case reflect.Int32:
+		e.value(int32(v.Int()))
+	case reflect.Int, reflect.Int64:
+		e.value(v.Int())
+	case reflect.Uint8, reflect.Uint16, reflect.Uint32, reflect.Uint,
+		reflect.Uint64:
+		e.tag(tagUint)
+		e.uint64(v.Uint())
+	case reflect.Float32:
+		e.value(float32(v.Float()))
+	case reflect.Float64:
+		e.value(v.Float())
+	case reflect.String:
+		e.value(v.String())
+	case reflect.Slice, reflect.Array:
+		e.tag(tagList)
+		e.uint64(uint64(v.Len()))
+		for i := 0; i < v.Len(); i++ {
+			e.reflect(v.Index(i))
+		}
+	case reflect.Map:
+		e.tag(tagMap)
+		e.uint64(uint64(v.Len()))
+		keys := v.MapKeys()
+		slices.SortFunc(keys, func(a, b reflect.Value) int {
+			return strings.Compare(fmt.Sprint(a), fmt.Sprint(b))
+		})
+		for _, k := range keys {
+			e.string(fmt.Sprint(k))
+			e.reflect(v.MapIndex(k))
+		}
+	case reflect.Struct:
+		e.tag(tagStruct)
+		t := v.Type()
+		e.string(t.String())
+		for i := 0; i < v.NumField(); i++ {
+			if t.Field(i).IsExported() {
+				e.reflect(v.Field(i))
+			}
+		}
+	default:
+		// Channels and funcs cannot be encoded as NBT anyway.
+		e.tag(tagNil)
+	}
+}
+
+// --- Result Copies ---
+
+// copyError returns a copy of a shared *ConversionError, so that a caller
+// modifying it cannot change what other callers get. Other errors are
+// returned as-is.
+func copyError(err error) error {
+	if convErr, ok := err.(*ConversionError); ok {
+		c := *convErr
+		return &c
+	}
+	return err
+}
+
+// copyBlock returns a deep copy of a cached Block.
+func copyBlock(b *Block) *Block {
+	return &Block{ID: b.ID, States: copyMap(b.States)}
+}
+
+// copyBiome returns a copy of a cached BiomeResponse.
+func copyBiome(b *BiomeResponse) *BiomeResponse {
+	c := *b
+	return &c
+}
+
+// copyMapResult returns a deep copy of a cached map-shaped result such as an
+// Item, Entity or BlockEntity.
+func copyMapResult[T ~map[string]any](m *T) *T {
+	c := T(copyMap(*m))
+	return &c
+}
+
+func copyMap(m map[string]any) map[string]any {
+	if m == nil {
+		return nil
+	}
+	c := make(map[string]any, len(m))
+	for k, v := range m {
+		c[k] = copyValue(v)
+	}
+	return c
+}
+
+// copyValue deep copies the mutable container types the NBT decoder
+// produces. Other values are immutable and returned as-is.
+func copyValue(v any) any {
+	switch v := v.(type) {
+	case map[string]any:
+		return copyMap(v)
+	case []any:
+		c := make([]any, len(v))
+		for i, e := range v {
+			c[i] = copyValue(e)
+		}
+		return c
+	case []byte:
+		return slices.Clone(v)
+	case []int32:
+		return slices.Clone(v)
+	case []int64:
+		return slices.Clone(v)
+	case []string:
+		return slices.Clone(v)
+	case []map[string]any:
+		c := make([]map[string]any, len(v))
+		for i, e := range v {
+			c[i] = copyMap(e)
+		}
+		return c
+	default:
+		return v
+	}
+}
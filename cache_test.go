@@ -0,0 +1,90 @@
+package crocon
+
+import (
+	"fmt"
+	"testing"
+)
+
+// orderedMap builds a map with n entries inserted in ascending or descending
+// order, nesting a second map so both levels are checked.
+func orderedMap(n int, descending bool) map[string]any {
+	m := make(map[string]any)
+	for i := range n {
+		if descending {
+			i = n - 1 - i
+		}
+		m[fmt.Sprintf("key%03d", i)] = int32(i)
+	}
+	nested := make(map[string]any)
+	for i := range n {
+		if descending {
+			i = n - 1 - i
+		}
+		nested[fmt.Sprintf("nested%03d", i)] = fmt.Sprint(i)
+	}
+	m["nested"] = nested
+	return m
+}
+
+func TestRequestKeyMapOrder(t *testing.T) {
+	ascending := orderedMap(64, false)
+	descending := orderedMap(64, true)
+
+	tests := []struct {
+		name string
+		a, b any
+	}{
+		{"map", ascending, descending},
+		{"item", Item(ascending), Item(descending)},
+		{"block states", Block{ID: "minecraft:stone", States: ascending}, Block{ID: "minecraft:stone", States: descending}},
+		{"list of maps", []any{ascending, descending}, []any{descending, ascending}},
+	}
+	for _, test := range tests {
+		t.Run(test.name, func(t *testing.T) {
+			want := requestKey(KindBlock, testPair, test.a)
+			// Map iteration order is randomised, so encode repeatedly.
+			for range 20 {
+				if got := requestKey(KindBlock, testPair, test.b); got != want {
+					t.Fatalf("equal requests encoded to different keys")
+				}
+			}
+		})
+	}
+}
+
+func TestRequestKeyDistinct(t *testing.T) {
+	otherPair := testPair
+	otherPair.ToVersion = "1.21.100"
+
+	type key struct {
+		kind Kind
+		req  ConversionRequest
+		data any
+	}
+	keys := []struct {
+		name string
+		key  key
+	}{
+		{"string", key{KindBlock, testPair, map[string]any{"v": "1"}}},
+		{"int32", key{KindBlock, testPair, map[string]any{"v": int32(1)}}},
+		{"int64", key{KindBlock, testPair, map[string]any{"v": int64(1)}}},
+		{"byte", key{KindBlock, testPair, map[string]any{"v": byte(1)}}},
+		{"float64", key{KindBlock, testPair, map[string]any{"v": 1.0}}},
+		{"list", key{KindBlock, testPair, map[string]any{"v": []any{"1"}}}},
+		{"nested map", key{KindBlock, testPair, map[string]any{"v": map[string]any{"1": "1"}}}},
+		{"renamed key", key{KindBlock, testPair, map[string]any{"w": "1"}}},
+		{"split key", key{KindBlock, testPair, map[string]any{"v1": ""}}},
+		{"other kind", key{KindItem, testPair, map[string]any{"v": "1"}}},
+		{"other pair", key{KindBlock, otherPair, map[string]any{"v": "1"}}},
+		{"block", key{KindBlock, testPair, Block{ID: "v", States: map[string]any{}}}},
+	}
+
+	seen := make(map[cacheKey]string, len(keys))
+	for _, k := range keys {
+		got := requestKey(k.key.kind, k.key.req, k.key.data)
+		if other, ok := seen[got]; ok {
+			t.Fatalf("%s and %s encoded to the same key", other, k.name)
+		}
+		seen[got] = k.name
+	}
+}
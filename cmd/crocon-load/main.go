@@ -0,0 +1,463 @@
+// Command crocon-load drives the compiled libcrocon shared library through the Go
+// binding at a configurable concurrency and rate, and reports throughput, latency
+// percentiles and isolate heap growth. It runs fully offline.
+//
+// Requests are replayed from a JSONL file with one request per line:
+//
+//	{"kind":"block","fromVersion":"1.21.10","toVersion":"1.21.120",
+//	 "fromEdition":"java","toEdition":"bedrock",
+//	 "data":{"id":"minecraft:oak_log","states":{"axis":"y"}}}
+//
+// JSON numbers in "data" become NBT ints (or doubles if fractional) and booleans
+// become bytes. For exact NBT types, set "nbt" to the Base64 of the little-endian
+// NBT compound instead of "data". Without -requests, a built-in synthetic mix is used.
+package main
+
+import (
+	"bufio"
+	"bytes"
+	"encoding/base64"
+	"encoding/json"
+	"flag"
+	"fmt"
+	"log"
+	"math"
+	"os"
+	"slices"
+	"strings"
+	"sync"
+	"sync/atomic"
+	"time"
+
+	"github.com/oriumgames/crocon"
+	"github.com/oriumgames/nbt"
+)
+
+// record is a single request in a JSONL request mix.
+type record struct {
+	Kind        crocon.Kind    `json:"kind"`
+	FromVersion string         `json:"fromVersion"`
+	ToVersion   string         `json:"toVersion"`
+	FromEdition crocon.Edition `json:"fromEdition"`
+	ToEdition   crocon.Edition `json:"toEdition"`
+	Data        map[string]any `json:"data"`
+	NBT         string         `json:"nbt"`
+}
+
+// request is a prepared request ready to be sent through the converter.
+type request struct {
+	kind crocon.Kind
+	call func(*crocon.Converter) error
+}
+
+// sample is the outcome of a single request.
+type sample struct {
+	kind    crocon.Kind
+	latency time.Duration
+	err     error
+}
+
+// maxReportedErrors is how many distinct error messages the report lists.
+const maxReportedErrors = 5
+
+func main() {
+	requestsFile := flag.String("requests", "", "JSONL file of requests to replay (default: built-in synthetic mix)")
+	concurrency := flag.Int("concurrency", 16, "number of goroutines issuing requests")
+	rate := flag.Float64("rate", 0, "target requests per second across all goroutines (0 for as fast as possible)")
+	duration := flag.Duration("duration", 30*time.Second, "measured run time")
+	warmup := flag.Duration("warmup", 5*time.Second, "unmeasured run time before measuring")
+	interval := flag.Duration("interval", 5*time.Second, "how often to report progress and sample isolate heap usage")
+	poolSize := flag.Int("pool", 1, "number of isolates")
+	maxBatch := flag.Int("batch", crocon.DefaultMaxBatch, "maximum requests per native batch call (1 disables batching)")
+	batchWindow := flag.Duration("batch-window", 0, "how long an isolate waits for a batch to fill")
+	cacheSize := flag.Int("cache", 0, "Go result cache size (0 disables it so every request reaches the library)")
+	flag.Parse()
+
+	var mix []request
+	var err error
+	if *requestsFile != "" {
+		mix, err = loadMix(*requestsFile)
+	} else {
+		mix, err = syntheticMix()
+	}
+	if err != nil {
+		log.Fatalf("Failed to prepare request mix: %v", err)
+	}
+	if len(mix) == 0 {
+		log.Fatalf("Request mix is empty")
+	}
+
+	converter, err := crocon.NewConverter(
+		crocon.WithPoolSize(*poolSize),
+		crocon.WithCacheSize(*cacheSize),
+		crocon.WithBatching(*maxBatch, *batchWindow),
+	)
+	if err != nil {
+		log.Fatalf("Failed to initialize converter: %v", err)
+	}
+	defer converter.Close()
+
+	heapStart := heapUsed(converter)
+	log.Printf("Loaded %d requests; isolate heap %s", len(mix), formatBytes(heapStart))
+
+	if *warmup > 0 {
+		log.Printf("Warming up for %s", *warmup)
+		run(converter, mix, *concurrency, *rate, *warmup, 0, nil)
+	}
+
+	heapAfterWarmup := heapUsed(converter)
+	log.Printf("Measuring for %s at concurrency %d", *duration, *concurrency)
+	var heapSeries []int64
+	samples, elapsed := run(converter, mix, *concurrency, *rate, *duration, *interval, func(elapsed time.Duration, done, failed int64) {
+		heap := heapUsed(converter)
+		heapSeries = append(heapSeries, heap)
+		log.Printf("%6.1fs  %9d requests  %7d failed  %10.0f req/s  heap %s",
+			elapsed.Seconds(), done, failed, float64(done)/elapsed.Seconds(), formatBytes(heap))
+	})
+	heapEnd := heapUsed(converter)
+
+	report(samples, elapsed)
+	fmt.Printf("\nIsolate heap: start %s, after warmup %s, end %s (%+d bytes while measuring)\n",
+		formatBytes(heapStart), formatBytes(heapAfterWarmup), formatBytes(heapEnd), heapEnd-heapAfterWarmup)
+	if len(heapSeries) > 0 {
+		fmt.Printf("Heap samples: %s\n", joinBytes(heapSeries))
+	}
+	if stats := converter.ResultCacheStats(); stats.Capacity > 0 {
+		fmt.Printf("Result cache: %d hits, %d misses, %d evictions\n", stats.Hits, stats.Misses, stats.Evictions)
+	}
+}
+
+// run issues requests from mix for the given duration and returns their
+// outcomes and the wall time from start to the last completion, which exceeds
+// duration by however long the final in-flight requests took. If rate is set, requests are scheduled at fixed intervals and
+// latency is measured from the scheduled time, so a stalled library is not
+// hidden by requests that were never sent. progress, if set, is called every
+// interval.
+func run(converter *crocon.Converter, mix []request, concurrency int, rate float64, duration, interval time.Duration, progress func(time.Duration, int64, int64)) ([]sample, time.Duration) {
+	start := time.Now()
+	deadline := start.Add(duration)
+
+	var tickets chan time.Time
+	if rate > 0 {
+		tickets = make(chan time.Time, concurrency)
+		go func() {
+			defer close(tickets)
+			step := time.Duration(float64(time.Second) / rate)
+			for next := start; next.Before(deadline); next = next.Add(step) {
+				time.Sleep(time.Until(next))
+				tickets <- next
+			}
+		}()
+	}
+
+	var done, failed atomic.Int64
+	perWorker := make([][]sample, concurrency)
+	var wg sync.WaitGroup
+	for w := 0; w < concurrency; w++ {
+		wg.Add(1)
+		go func(w int) {
+			defer wg.Done()
+			for i := w; ; i += concurrency {
+				var scheduled time.Time
+				if tickets != nil {
+					var ok bool
+					if scheduled, ok = <-tickets; !ok {
+						return
+					}
+				} else {
+					scheduled = time.Now()
+					if scheduled.After(deadline) {
+						return
+					}
+				}
+
+				req := mix[i%len(mix)]
+				err := req.call(converter)
+				perWorker[w] = append(perWorker[w], sample{
+					kind:    req.kind,
+					latency: time.Since(scheduled),
+					err:     err,
+				})
+				done.Add(1)
+				if err != nil {
+					failed.Add(1)
+				}
+			}
+		}(w)
+	}
+
+	stop := make(chan struct{})
+	stopped := make(chan struct{})
+	if progress != nil && interval > 0 {
+		go func() {
+			defer close(stopped)
+			ticker := time.NewTicker(interval)
+			defer ticker.Stop()
+			for {
+				select {
+				case <-ticker.C:
+					progress(time.Since(start), done.Load(), failed.Load())
+				case <-stop:
+					return
+				}
+			}
+		}()
+	} else {
+		close(stopped)
+	}
+
+	wg.Wait()
+	elapsed := time.Since(start)
+	close(stop)
+	<-stopped
+
+	var samples []sample
+	for _, s := range perWorker {
+		samples = append(samples, s...)
+	}
+	return samples, elapsed
+}
+
+// report prints throughput over the measured wall time, latency percentiles,
+// overall and per kind, and the most frequent error messages.
+func report(samples []sample, elapsed time.Duration) {
+	byKind := make(map[crocon.Kind][]sample)
+	errorCounts := make(map[string]int)
+	var failed int
+	for _, s := range samples {
+		byKind[s.kind] = append(byKind[s.kind], s)
+		if s.err != nil {
+			failed++
+			errorCounts[s.err.Error()]++
+		}
+	}
+
+	fmt.Printf("\n%d requests, %d failed in %s, %.0f req/s\n\n", len(samples), failed,
+		elapsed.Round(time.Millisecond), float64(len(samples))/elapsed.Seconds())
+	fmt.Printf("%-14s %9s %9s %10s %10s %10s %10s %10s\n", "kind", "requests", "failed", "p50", "p90", "p99", "p999", "max")
+	printRow("all", samples)
+
+	kinds := make([]crocon.Kind, 0, len(byKind))
+	for kind := range byKind {
+		kinds = append(kinds, kind)
+	}
+	slices.Sort(kinds)
+	for _, kind := range kinds {
+		printRow(string(kind), byKind[kind])
+	}
+
+	if len(errorCounts) == 0 {
+		return
+	}
+	messages := make([]string, 0, len(errorCounts))
+	for message := range errorCounts {
+		messages = append(messages, message)
+	}
+	slices.SortFunc(messages, func(a, b string) int {
+		if errorCounts[a] != errorCounts[b] {
+			return errorCounts[b] - errorCounts[a]
+		}
+		return strings.Compare(a, b)
+	})
+	fmt.Printf("\n%d distinct errors:\n", len(messages))
+	for _, message := range messages[:min(len(messages), maxReportedErrors)] {
+		fmt.Printf("%9d  %s\n", errorCounts[message], message)
+	}
+}
+
+func printRow(name string, samples []sample) {
+	if len(samples) == 0 {
+		return
+	}
+	latencies := make([]time.Duration, len(samples))
+	var failed int
+	for i, s := range samples {
+		latencies[i] = s.latency
+		if s.err != nil {
+			failed++
+		}
+	}
+	slices.Sort(latencies)
+
+	fmt.Printf("%-14s %9d %9d %10s %10s %10s %10s %10s\n", name, len(samples), failed,
+		percentile(latencies, 0.50), percentile(latencies, 0.90), percentile(latencies, 0.99),
+		percentile(latencies, 0.999), latencies[len(latencies)-1])
+}
+
+// percentile returns the nearest-rank percentile of sorted latencies.
+func percentile(sorted []time.Duration, p float64) time.Duration {
+	rank := int(math.Ceil(p*float64(len(sorted)))) - 1
+	return sorted[max(rank, 0)].Round(time.Microsecond)
+}
+
+func heapUsed(converter *crocon.Converter) int64 {
+	stats, err := converter.MemoryStats()
+	if err != nil {
+		log.Printf("Failed to read isolate memory stats: %v", err)
+		return 0
+	}
+	return stats.HeapUsed
+}
+
+func formatBytes(b int64) string {
+	return fmt.Sprintf("%.1f MiB", float64(b)/(1<<20))
+}
+
+func joinBytes(series []int64) string {
+	var buf bytes.Buffer
+	for i, b := range series {
+		if i > 0 {
+			buf.WriteString(", ")
+		}
+		buf.WriteString(formatBytes(b))
+	}
+	return buf.String()
+}
+
+// --- Request Mixes ---
+
+// loadMix reads a JSONL request mix.
+func loadMix(path string) ([]request, error) {
+	file, err := os.Open(path)
+	if err != nil {
+		return nil, err
+	}
+	defer file.Close()
+
+	var mix []request
+	scanner := bufio.NewScanner(file)
+	scanner.Buffer(make([]byte, 0, 64*1024), 16*1024*1024)
+	for line := 1; scanner.Scan(); line++ {
+		text := bytes.TrimSpace(scanner.Bytes())
+		if len(text) == 0 {
+			continue
+		}
+
+		var rec record
+		if err := json.Unmarshal(text, &rec); err != nil {
+			return nil, fmt.Errorf("line %d: %w", line, err)
+		}
+		req, err := prepare(rec)
+		if err != nil {
+			return nil, fmt.Errorf("line %d: %w", line, err)
+		}
+		mix = append(mix, req)
+	}
+	return mix, scanner.Err()
+}
+
+// syntheticMix returns a small Java to Bedrock mix weighted towards blocks, as
+// seen when streaming chunks.
+func syntheticMix() ([]request, error) {
+	records := []record{
+		{Kind: crocon.KindBlock, Data: map[string]any{"id": "minecraft:stone"}},
+		{Kind: crocon.KindBlock, Data: map[string]any{"id": "minecraft:grass_block", "states": map[string]any{"snowy": "false"}}},
+		{Kind: crocon.KindBlock, Data: map[string]any{"id": "minecraft:oak_log", "states": map[string]any{"axis": "y"}}},
+		{Kind: crocon.KindBlock, Data: map[string]any{"id": "minecraft:mossy_stone_bricks"}},
+		{Kind: crocon.KindBlock, Data: map[string]any{"id": "minecraft:oak_stairs", "states": map[string]any{
+			"facing": "north", "half": "bottom", "shape": "straight", "waterlogged": "false",
+		}}},
+		{Kind: crocon.KindBlock, Data: map[string]any{"id": "minecraft:water", "states": map[string]any{"level": "0"}}},
+		{Kind: crocon.KindItem, Data: map[string]any{"id": "minecraft:diamond_sword", "count": 1}},
+		{Kind: crocon.KindItem, Data: map[string]any{"id": "minecraft:oak_planks", "count": 64}},
+		{Kind: crocon.KindBiome, Data: map[string]any{"name": "minecraft:plains"}},
+		{Kind: crocon.KindEntity, Data: map[string]any{"id": "minecraft:pig"}},
+	}
+
+	mix := make([]request, len(records))
+	for i, rec := range records {
+		rec.FromVersion, rec.ToVersion = "1.21.10", "1.21.120"
+		rec.FromEdition, rec.ToEdition = crocon.JavaEdition, crocon.BedrockEdition
+		req, err := prepare(rec)
+		if err != nil {
+			return nil, err
+		}
+		mix[i] = req
+	}
+	return mix, nil
+}
+
+// prepare turns a record into a request against the matching Convert method.
+func prepare(rec record) (request, error) {
+	data := rec.Data
+	if rec.NBT != "" {
+		raw, err := base64.StdEncoding.DecodeString(rec.NBT)
+		if err != nil {
+			return request{}, fmt.Errorf("invalid nbt field: %w", err)
+		}
+		data = nil
+		decoder := nbt.NewDecoderWithEncoding(bytes.NewReader(raw), nbt.LittleEndian)
+		if err := decoder.Decode(&data); err != nil {
+			return request{}, fmt.Errorf("invalid nbt field: %w", err)
+		}
+	} else if data != nil {
+		data = nbtValue(data).(map[string]any)
+	}
+	if data == nil {
+		return request{}, fmt.Errorf("request has no data")
+	}
+
+	conv := crocon.ConversionRequest{
+		FromVersion: rec.FromVersion, ToVersion: rec.ToVersion,
+		FromEdition: rec.FromEdition, ToEdition: rec.ToEdition,
+	}
+
+	var call func(*crocon.Converter) error
+	switch rec.Kind {
+	case crocon.KindBlock:
+		id, _ := data["id"].(string)
+		states, _ := data["states"].(map[string]any)
+		if states == nil {
+			states = map[string]any{}
+		}
+		req := crocon.BlockRequest{ConversionRequest: conv, Block: crocon.Block{ID: id, States: states}}
+		call = func(c *crocon.Converter) error { _, err := c.ConvertBlock(req); return err }
+	case crocon.KindItem:
+		req := crocon.ItemRequest{ConversionRequest: conv, Item: data}
+		call = func(c *crocon.Converter) error { _, err := c.ConvertItem(req); return err }
+	case crocon.KindBiome:
+		req := crocon.BiomeRequest{ConversionRequest: conv, Data: data}
+		call = func(c *crocon.Converter) error { _, err := c.ConvertBiome(req); return err }
+	case crocon.KindEntity:
+		req := crocon.EntityRequest{ConversionRequest: conv, Entity: data}
+		call = func(c *crocon.Converter) error { _, err := c.ConvertEntity(req); return err }
+	case crocon.KindBlockEntity:
+		req := crocon.BlockEntityRequest{ConversionRequest: conv, BlockEntity: data}
+		call = func(c *crocon.Converter) error { _, err := c.ConvertBlockEntity(req); return err }
+	default:
+		return request{}, fmt.Errorf("unsupported kind %q", rec.Kind)
+	}
+	return request{kind: rec.Kind, call: call}, nil
+}
+
+// nbtValue maps decoded JSON onto NBT-friendly Go types.
+func nbtValue(v any) any {
+	switch v := v.(type) {
+	case map[string]any:
+		m := make(map[string]any, len(v))
+		for k, e := range v {
+			m[k] = nbtValue(e)
+		}
+		return m
+	case []any:
+		l := make([]any, len(v))
+		for i, e := range v {
+			l[i] = nbtValue(e)
+		}
+		return l
+	case float64:
+		if v == math.Trunc(v) && v >= math.MinInt32 && v <= math.MaxInt32 {
+			return int32(v)
+		}
+		return v
+	case int:
+		return int32(v)
+	case bool:
+		if v {
+			return byte(1)
+		}
+		return byte(0)
+	default:
+		return v
+	}
+}
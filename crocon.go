@@ -12,9 +12,11 @@ import "C"
 import (
 	"bytes"
 	"encoding/base64"
+	"errors"
 	"fmt"
 	"runtime"
 	"sync"
+	"time"
 	"unsafe"
 
 	"github.com/oriumgames/nbt"
@@ -27,6 +29,9 @@ type conversionRequest struct {
 	payload any
 	// convertFunc is the actual CGO function wrapper that performs the conversion.
 	convertFunc func(isolateThread *C.graal_isolatethread_t, payload any) (any, error)
+	// batch, if set, allows the request to be converted together with other
+	// queued requests in a single native batch call.
+	batch *batchItem
 	// responseChan is the channel to send the result back to the calling goroutine.
 	responseChan chan<- conversionResponse
 }
@@ -38,87 +43,157 @@ type conversionResponse struct {
 }
 
 // Converter provides a safe, idiomatic Go interface to the Crocon native library.
-// It manages a dedicated, thread-locked goroutine to handle the lifecycle of the
-// GraalVM isolate and all data marshalling, ensuring thread-safe CGO calls.
+// It manages a pool of GraalVM isolates, each driven by a dedicated, thread-locked
+// goroutine that handles all of its data marshalling, ensuring thread-safe CGO calls.
+// Requests are routed to an isolate by version pair so that each pair's resolvers
+// stay warm in one isolate, and spill over to an idle isolate when that one is busy.
 type Converter struct {
-	requestChan    chan conversionRequest
-	shutdownChan   chan struct{}
-	workerDoneChan chan struct{}
-	cache          sync.Map
+	// mu guards closed, and is held for reading while a request is queued so
+	// that Close can wait for every queued request to be answered.
+	mu           sync.RWMutex
+	closed       bool
+	isolates     []*isolateWorker
+	shared       chan conversionRequest
+	shutdownChan chan struct{}
+	workers      sync.WaitGroup
+	cache        *resultCache
+	flights      flightGroup
+	maxBatch     int
+	batchWindow  time.Duration
 }
 
-// NewConverter creates a new instance of the converter. It initializes a GraalVM isolate
-// on a dedicated OS thread, which is used for all subsequent conversion calls.
+// DefaultCacheSize is the number of results the converter caches by default.
+const DefaultCacheSize = 4096
+
+// options holds the settings applied by Option functions.
+type options struct {
+	cacheSize   int
+	poolSize    int
+	isolateHeap uint64
+	maxBatch    int
+	batchWindow time.Duration
+}
+
+// Option configures a Converter created by NewConverter.
+type Option func(*options)
+
+// WithCacheSize bounds the result cache to size entries, evicting the least
+// recently used result when full. A size of zero disables caching.
+func WithCacheSize(size int) Option {
+	return func(o *options) {
+		o.cacheSize = size
+	}
+}
+
+// WithPoolSize sets the number of GraalVM isolates, each on its own OS thread,
+// that conversions are spread across. It defaults to 1.
+func WithPoolSize(size int) Option {
+	return func(o *options) {
+		o.poolSize = size
+	}
+}
+
+// WithIsolateHeap caps the heap of each isolate by limiting the address space it
+// reserves, in bytes. A size of zero uses the library's default. The library sets
+// no minimum heap size, so any cap can be used, but conversions fail once an
+// isolate cannot fit the resolvers for the version pairs it serves.
+func WithIsolateHeap(size uint64) Option {
+	return func(o *options) {
+		o.isolateHeap = size
+	}
+}
+
+// WithBatching controls how queued requests are combined. When requests are
+// waiting for an isolate, up to maxSize of them are converted in one native call,
+// and the isolate waits at most window for more to arrive before making the call.
+// The defaults are DefaultMaxBatch and no wait, so batches only form from requests
+// that are already queued. A maxSize of 1 or less disables batching.
+func WithBatching(maxSize int, window time.Duration) Option {
+	return func(o *options) {
+		o.maxBatch = maxSize
+		o.batchWindow = window
+	}
+}
+
+// NewConverter creates a new instance of the converter. It initializes its GraalVM
+// isolates, each on a dedicated OS thread, which are used for all subsequent conversion calls.
 // The returned Converter MUST be closed with the Close() method to prevent resource leaks.
-func NewConverter() (*Converter, error) {
+func NewConverter(opts ...Option) (*Converter, error) {
+	o := options{cacheSize: DefaultCacheSize, poolSize: 1, maxBatch: DefaultMaxBatch}
+	for _, opt := range opts {
+		opt(&o)
+	}
+	if o.poolSize < 1 {
+		return nil, fmt.Errorf("pool size must be at least 1, got %d", o.poolSize)
+	}
+
 	converter := &Converter{
-		requestChan:    make(chan conversionRequest),
-		shutdownChan:   make(chan struct{}),
-		workerDoneChan: make(chan struct{}),
+		isolates:     make([]*isolateWorker, o.poolSize),
+		shared:       make(chan conversionRequest),
+		shutdownChan: make(chan struct{}),
+		maxBatch:     o.maxBatch,
+		batchWindow:  o.batchWindow,
+	}
+	if o.cacheSize > 0 {
+		converter.cache = newResultCache(o.cacheSize)
+	}
+
+	// Each isolate runs its own fork-join pool, so share the CPUs between them
+	// rather than giving every isolate one thread per CPU.
+	parallelism := 0
+	if o.poolSize > 1 {
+		parallelism = max(1, runtime.NumCPU()/o.poolSize)
 	}
 
-	initChan := make(chan error, 1)
-	go converter.worker(initChan)
+	initChan := make(chan error, o.poolSize)
+	for i := range converter.isolates {
+		converter.isolates[i] = &isolateWorker{
+			requests: make(chan conversionRequest, affinityDepth),
+		}
+		converter.workers.Add(1)
+		go converter.isolates[i].run(converter, o.isolateHeap, parallelism, initChan)
+	}
 
-	// Wait for the worker goroutine to successfully initialize the GraalVM isolate.
-	if err := <-initChan; err != nil {
-		return nil, err
+	// Wait for every worker goroutine to initialize its GraalVM isolate.
+	var initErr error
+	for range converter.isolates {
+		if err := <-initChan; err != nil && initErr == nil {
+			initErr = err
+		}
+	}
+	if initErr != nil {
+		converter.Close()
+		return nil, initErr
 	}
 
-	// Use a Go finalizer as a safety net to ensure the isolate is torn down
+	// Use a Go finalizer as a safety net to ensure the isolates are torn down
 	// if the user forgets to call Close().
 	runtime.SetFinalizer(converter, (*Converter).Close)
 
 	return converter, nil
 }
 
-// worker is the heart of the Converter. It runs on a single, locked OS thread and is
-// responsible for all CGO calls to the GraalVM native library.
-func (c *Converter) worker(initChan chan<- error) {
-	// Lock the goroutine to its current OS thread. This is mandatory for GraalVM isolates.
-	runtime.LockOSThread()
-	defer runtime.UnlockOSThread()
-
-	var isolate *C.graal_isolate_t
-	var thread *C.graal_isolatethread_t
-
-	if C.graal_create_isolate(nil, &isolate, &thread) != 0 {
-		initChan <- fmt.Errorf("failed to create graalvm isolate")
-		return
-	}
-	// Ensure the isolate is torn down when the worker exits.
-	defer C.graal_tear_down_isolate(thread)
-
-	// Signal that initialization was successful.
-	initChan <- nil
-
-	for {
-		select {
-		case req := <-c.requestChan:
-			// Execute the requested conversion function.
-			result, err := req.convertFunc(thread, req.payload)
-			req.responseChan <- conversionResponse{result: result, err: err}
-		case <-c.shutdownChan:
-			// The shutdown signal was received, signal completion and exit.
-			c.workerDoneChan <- struct{}{}
-			return
-		}
-	}
+// PoolSize returns the number of isolates in the converter's pool.
+func (c *Converter) PoolSize() int {
+	return len(c.isolates)
 }
 
-// Close tears down the GraalVM isolate and releases its resources.
+// Close tears down the GraalVM isolates and releases their resources. Requests
+// that are still queued are answered with ErrClosed, as are any made afterwards.
 // This method MUST be called when you are finished with the converter.
 func (c *Converter) Close() {
-	if c.shutdownChan != nil {
-		// Signal the worker to shut down.
+	// Taking the write lock waits for requests that are being queued, so no
+	// request can be left in a queue once the workers have drained them.
+	c.mu.Lock()
+	closed := c.closed
+	c.closed = true
+	c.mu.Unlock()
+
+	if !closed {
+		// Signal the workers to drain their queues and shut down.
 		close(c.shutdownChan)
-		// Wait for the worker to confirm it has cleaned up.
-		<-c.workerDoneChan
-
-		// Nil out the channels to prevent further use.
-		c.shutdownChan = nil
-		c.requestChan = nil
-		c.workerDoneChan = nil
+		// Wait for the workers to confirm they have cleaned up.
+		c.workers.Wait()
 	}
 	// Prevent the finalizer from running again after an explicit Close().
 	runtime.SetFinalizer(c, nil)
@@ -131,6 +206,19 @@ type nbtRequest struct {
 	FromEdition Edition `nbt:"fromEdition"`
 	ToEdition   Edition `nbt:"toEdition"`
 	Data        any     `nbt:"data"`
+
+	InputEncoding  NBTEncoding `nbt:"inputEncoding,omitempty"`
+	OutputEncoding NBTEncoding `nbt:"outputEncoding,omitempty"`
+
+	// Trace asks the library to return the request's phase timings.
+	Trace byte `nbt:"trace,omitempty"`
+}
+
+// structureData is the 'data' payload of a structure conversion request.
+type structureData struct {
+	Path       string `nbt:"path,omitempty"`
+	Payload    []byte `nbt:"payload,omitempty"`
+	OutputPath string `nbt:"outputPath,omitempty"`
 }
 
 // marshalRequest handles marshalling the Go request struct to a Base64-encoded string.
@@ -146,142 +234,181 @@ func marshalRequest(request nbtRequest) (string, error) {
 }
 
 // processResponseString handles unmarshalling the base64 string response into a Go struct.
-func processResponseString(b64Result string, responseData any) error {
+// If trace is set, it is filled with the response's phase timings.
+func processResponseString(b64Result string, responseData any, trace *Trace) error {
 	nbtResultBytes, err := base64.StdEncoding.DecodeString(b64Result)
 	if err != nil {
 		return fmt.Errorf("failed to base64-decode response from library: %w", err)
 	}
+	return decodeResponse(nbtResultBytes, responseData, trace)
+}
 
-	decoder := nbt.NewDecoderWithEncoding(bytes.NewReader(nbtResultBytes), nbt.LittleEndian)
-
-	var genericResponse map[string]any
-	if err := decoder.Decode(&genericResponse); err != nil {
-		return fmt.Errorf("failed to unmarshal NBT response envelope: %w", err)
+// processRawResponseString unmarshals a response whose 'data' field was returned
+// as encoded NBT bytes, as requested by an outputEncoding. If trace is set, it is
+// filled with the response's phase timings.
+func processRawResponseString(b64Result string, trace *Trace) ([]byte, error) {
+	nbtResultBytes, err := base64.StdEncoding.DecodeString(b64Result)
+	if err != nil {
+		return nil, fmt.Errorf("failed to base64-decode response from library: %w", err)
 	}
 
-	if success, ok := genericResponse["success"].(byte); !ok || success == 0 {
-		errMsg, _ := genericResponse["error"].(string)
-		stackTrace, _ := genericResponse["stackTrace"].(string)
-		return &ConversionError{
-			Message:    errMsg,
-			StackTrace: stackTrace,
-		}
+	var response struct {
+		Success    byte   `nbt:"success"`
+		Error      string `nbt:"error"`
+		StackTrace string `nbt:"stackTrace"`
+		Warming    byte   `nbt:"warming"`
+		Data       []byte `nbt:"data"`
+		Trace      Trace  `nbt:"trace"`
+	}
+	decoder := nbt.NewDecoderWithEncoding(bytes.NewReader(nbtResultBytes), nbt.LittleEndian)
+	if err := decoder.Decode(&response); err != nil {
+		return nil, fmt.Errorf("failed to unmarshal NBT response envelope: %w", err)
+	}
+	if trace != nil {
+		*trace = response.Trace
 	}
 
-	data, ok := genericResponse["data"]
-	if !ok {
-		data = genericResponse
+	if response.Success == 0 {
+		return nil, &ConversionError{
+			Message:    response.Error,
+			StackTrace: response.StackTrace,
+			Warming:    response.Warming != 0,
+		}
 	}
+	return response.Data, nil
+}
 
-	var dataBuf bytes.Buffer
-	dataEncoder := nbt.NewEncoderWithEncoding(&dataBuf, nbt.LittleEndian)
-	if err := dataEncoder.Encode(data); err != nil {
-		return fmt.Errorf("failed to re-marshal 'data' field for final unmarshaling: %w", err)
+// traceFlag returns the value of a request's trace field, which asks the library
+// for phase timings when the caller passed somewhere to put them.
+func traceFlag(trace *Trace) byte {
+	if trace != nil {
+		return 1
 	}
+	return 0
+}
 
-	dataDecoder := nbt.NewDecoderWithEncoding(bytes.NewReader(dataBuf.Bytes()), nbt.LittleEndian)
-	if err := dataDecoder.Decode(responseData); err != nil {
-		return fmt.Errorf("failed to unmarshal 'data' payload into response struct: %w", err)
+// isCacheable reports whether a response with the given processing error may be
+// cached. Warming errors are transient and must be retried instead.
+func isCacheable(err error) bool {
+	var convErr *ConversionError
+	if errors.As(err, &convErr) {
+		return !convErr.Warming
 	}
+	return err == nil
+}
 
-	return nil
+// dispatch sends a request to the home isolate of its version pair, or an idle
+// isolate if that one is busy, and waits for the response.
+func (c *Converter) dispatch(req ConversionRequest, payload any, convertFunc func(*C.graal_isolatethread_t, any) (any, error)) (any, error) {
+	return c.dispatchBatchable(req, nil, payload, convertFunc)
 }
 
-// dispatch sends a request to the worker and waits for the response.
-func (c *Converter) dispatch(payload any, convertFunc func(*C.graal_isolatethread_t, any) (any, error)) (any, error) {
-	if c.requestChan == nil {
-		return nil, fmt.Errorf("converter has been closed")
-	}
+// dispatchBatchable is like dispatch, but if item is set the request may be
+// converted in a single native call together with other queued requests.
+func (c *Converter) dispatchBatchable(req ConversionRequest, item *batchItem, payload any, convertFunc func(*C.graal_isolatethread_t, any) (any, error)) (any, error) {
+	return c.send(c.route(req.FromVersion, req.ToVersion), true, conversionRequest{
+		payload:     payload,
+		convertFunc: convertFunc,
+		batch:       item,
+	})
+}
 
+// send queues a request on an isolate and waits for the response. If spill is
+// set, the request may run on another isolate when w is busy.
+func (c *Converter) send(w *isolateWorker, spill bool, request conversionRequest) (any, error) {
 	responseChan := make(chan conversionResponse, 1)
-	c.requestChan <- conversionRequest{
-		payload:      payload,
-		convertFunc:  convertFunc,
-		responseChan: responseChan,
+	request.responseChan = responseChan
+
+	c.mu.RLock()
+	if c.closed {
+		c.mu.RUnlock()
+		return nil, ErrClosed
 	}
+	if spill {
+		c.submit(w, request)
+	} else {
+		w.requests <- request
+	}
+	c.mu.RUnlock()
 
 	response := <-responseChan
 	return response.result, response.err
 }
 
-// ConvertBlock converts a block between editions.
-func (c *Converter) ConvertBlock(req BlockRequest) (*Block, error) {
-	nbtReq := nbtRequest{
-		FromVersion: req.FromVersion, ToVersion: req.ToVersion,
-		FromEdition: req.FromEdition, ToEdition: req.ToEdition,
-		Data: req.Block,
-	}
-
-	b64Input, err := marshalRequest(nbtReq)
-	if err != nil {
-		return nil, err
-	}
-
-	cacheKey := "block:" + b64Input
-	if cached, ok := c.cache.Load(cacheKey); ok {
-		var responseBlock Block
-		if err := processResponseString(cached.(string), &responseBlock); err != nil {
-			return nil, err
+// convertCached converts data of the given kind, consulting the converter's
+// result cache first. Identical requests that are in flight at the same time are
+// converted once and share the result. Shared results are copied with copyResult
+// before being returned so callers can freely mutate them.
+func convertCached[T any](c *Converter, kind Kind, req ConversionRequest, data any, copyResult func(*T) *T) (*T, error) {
+	key := requestKey(kind, req, data)
+	if c.cache != nil {
+		if cached, ok := c.cache.get(key); ok {
+			if err, isErr := cached.(error); isErr {
+				return nil, copyError(err)
+			}
+			return copyResult(cached.(*T)), nil
 		}
-		return &responseBlock, nil
 	}
 
-	res, err := c.dispatch(b64Input, func(thread *C.graal_isolatethread_t, payload any) (any, error) {
-		cInput := C.CString(payload.(string))
-		defer C.free(unsafe.Pointer(cInput))
-
-		cResult := C.convert_block(thread, cInput)
-		if cResult == nil {
-			return nil, fmt.Errorf("cgo call to convert_block returned a null pointer")
+	f, leader := c.flights.join(key)
+	if !leader {
+		<-f.done
+		if err, isErr := f.value.(error); isErr {
+			return nil, copyError(err)
 		}
-		defer C.free_result(thread, cResult)
-
-		return C.GoString(cResult), nil
-	})
+		return copyResult(f.value.(*T)), nil
+	}
 
+	var value any
+	result, err := convert[T](c, kind, req, data)
 	if err != nil {
-		return nil, err
+		value = err
+	} else {
+		value = result
 	}
+	if c.cache != nil && isCacheable(err) {
+		c.cache.put(key, value)
+	}
+	followers := c.flights.finish(key, f, value)
 
-	b64Result := res.(string)
-	c.cache.Store(cacheKey, b64Result)
-
-	var responseBlock Block
-	if err := processResponseString(b64Result, &responseBlock); err != nil {
+	// Others hold the original, so hand out a copy.
+	shared := c.cache != nil || followers > 0
+	if err != nil {
+		if shared {
+			return nil, copyError(err)
+		}
 		return nil, err
 	}
-	return &responseBlock, nil
-}
-
-// ConvertItem converts an item stack between editions.
-func (c *Converter) ConvertItem(req ItemRequest) (*Item, error) {
-	nbtReq := nbtRequest{
-		FromVersion: req.FromVersion, ToVersion: req.ToVersion,
-		FromEdition: req.FromEdition, ToEdition: req.ToEdition,
-		Data: req.Item,
+	if shared {
+		return copyResult(result), nil
 	}
+	return result, nil
+}
 
-	b64Input, err := marshalRequest(nbtReq)
+// convert encodes a request, dispatches it as a batchable request and decodes
+// the response.
+func convert[T any](c *Converter, kind Kind, req ConversionRequest, data any) (*T, error) {
+	payload, err := encodeCompoundPayload(data)
 	if err != nil {
 		return nil, err
 	}
-
-	cacheKey := "item:" + b64Input
-	if cached, ok := c.cache.Load(cacheKey); ok {
-		var responseItem Item
-		if err := processResponseString(cached.(string), &responseItem); err != nil {
-			return nil, err
-		}
-		return &responseItem, nil
+	envelope, err := encodeEnvelope(req, payload)
+	if err != nil {
+		return nil, fmt.Errorf("failed to marshal request to Bedrock NBT: %w", err)
 	}
+	b64Input := base64.StdEncoding.EncodeToString(envelope)
+	item := &batchItem{kind: kind, req: req, data: payload}
 
-	res, err := c.dispatch(b64Input, func(thread *C.graal_isolatethread_t, payload any) (any, error) {
+	res, err := c.dispatchBatchable(req, item, b64Input, func(thread *C.graal_isolatethread_t, payload any) (any, error) {
 		cInput := C.CString(payload.(string))
 		defer C.free(unsafe.Pointer(cInput))
 
-		cResult := C.convert_item(thread, cInput)
+		cResult, err := callConvert(thread, kind, cInput)
+		if err != nil {
+			return nil, err
+		}
 		if cResult == nil {
-			return nil, fmt.Errorf("cgo call to convert_item returned a null pointer")
+			return nil, fmt.Errorf("cgo call to convert_%s returned a null pointer", kind)
 		}
 		defer C.free_result(thread, cResult)
 
@@ -292,71 +419,125 @@ func (c *Converter) ConvertItem(req ItemRequest) (*Item, error) {
 		return nil, err
 	}
 
-	b64Result := res.(string)
-	c.cache.Store(cacheKey, b64Result)
-
-	var responseItem Item
-	if err := processResponseString(b64Result, &responseItem); err != nil {
+	result := new(T)
+	switch res := res.(type) {
+	case string:
+		err = processResponseString(res, result, nil)
+	case []byte:
+		// Results fanned out from a batch are already decoded from Base64.
+		err = decodeResponse(res, result, nil)
+	}
+	if err != nil {
 		return nil, err
 	}
-	return &responseItem, nil
+	return result, nil
+}
+
+// ConvertBlock converts a block between editions.
+func (c *Converter) ConvertBlock(req BlockRequest) (*Block, error) {
+	return convertCached(c, KindBlock, req.ConversionRequest, req.Block, copyBlock)
+}
+
+// ConvertItem converts an item stack between editions.
+func (c *Converter) ConvertItem(req ItemRequest) (*Item, error) {
+	return convertCached(c, KindItem, req.ConversionRequest, req.Item, copyMapResult[Item])
 }
 
 // ConvertEntity converts an entity between editions.
 func (c *Converter) ConvertEntity(req EntityRequest) (*Entity, error) {
-	nbtReq := nbtRequest{
-		FromVersion: req.FromVersion, ToVersion: req.ToVersion,
-		FromEdition: req.FromEdition, ToEdition: req.ToEdition,
-		Data: req.Entity,
-	}
+	return convertCached(c, KindEntity, req.ConversionRequest, req.Entity, copyMapResult[Entity])
+}
 
-	b64Input, err := marshalRequest(nbtReq)
-	if err != nil {
-		return nil, err
+// ConvertBiome converts a biome identifier between editions.
+func (c *Converter) ConvertBiome(req BiomeRequest) (*BiomeResponse, error) {
+	return convertCached(c, KindBiome, req.ConversionRequest, req.Data, copyBiome)
+}
+
+// ConvertBlockEntity converts a block entity between editions.
+func (c *Converter) ConvertBlockEntity(req BlockEntityRequest) (*BlockEntity, error) {
+	return convertCached(c, KindBlockEntity, req.ConversionRequest, req.BlockEntity, copyMapResult[BlockEntity])
+}
+
+// ResultCacheStats returns a snapshot of the result cache counters.
+func (c *Converter) ResultCacheStats() ResultCacheStats {
+	if c.cache == nil {
+		return ResultCacheStats{}
 	}
+	return c.cache.stats()
+}
 
-	cacheKey := "entity:" + b64Input
-	if cached, ok := c.cache.Load(cacheKey); ok {
-		var responseEntity Entity
-		if err := processResponseString(cached.(string), &responseEntity); err != nil {
+// MemoryStats reports the isolate heap usage and the approximate footprint of
+// every version pair cached in the isolates. With more than one isolate the heap
+// figures are summed, a pair cached in several isolates is reported once with its
+// figures summed, and Isolates holds the statistics of each isolate. Results are
+// never cached.
+func (c *Converter) MemoryStats() (*MemoryStats, error) {
+	perIsolate := make([]MemoryStats, len(c.isolates))
+	for i, w := range c.isolates {
+		res, err := c.send(w, false, conversionRequest{convertFunc: func(thread *C.graal_isolatethread_t, _ any) (any, error) {
+			cResult := C.memory_stats(thread)
+			if cResult == nil {
+				return nil, fmt.Errorf("cgo call to memory_stats returned a null pointer")
+			}
+			defer C.free_result(thread, cResult)
+
+			return C.GoString(cResult), nil
+		}})
+
+		if err != nil {
 			return nil, err
 		}
-		return &responseEntity, nil
-	}
-
-	res, err := c.dispatch(b64Input, func(thread *C.graal_isolatethread_t, payload any) (any, error) {
-		cInput := C.CString(payload.(string))
-		defer C.free(unsafe.Pointer(cInput))
 
-		cResult := C.convert_entity(thread, cInput)
-		if cResult == nil {
-			return nil, fmt.Errorf("cgo call to convert_entity returned a null pointer")
+		if err := processResponseString(res.(string), &perIsolate[i], nil); err != nil {
+			return nil, err
 		}
-		defer C.free_result(thread, cResult)
-
-		return C.GoString(cResult), nil
-	})
-
-	if err != nil {
-		return nil, err
 	}
 
-	b64Result := res.(string)
-	c.cache.Store(cacheKey, b64Result)
+	if len(perIsolate) == 1 {
+		return &perIsolate[0], nil
+	}
+	return sumMemoryStats(perIsolate), nil
+}
 
-	var responseEntity Entity
-	if err := processResponseString(b64Result, &responseEntity); err != nil {
-		return nil, err
+// sumMemoryStats combines the statistics of several isolates.
+func sumMemoryStats(perIsolate []MemoryStats) *MemoryStats {
+	total := &MemoryStats{
+		Caches:   make(map[string]CacheStats),
+		Isolates: perIsolate,
+	}
+	for _, stats := range perIsolate {
+		total.HeapUsed += stats.HeapUsed
+		total.HeapCommitted += stats.HeapCommitted
+		total.HeapMax += stats.HeapMax
+		total.CachesRetainedBytes += stats.CachesRetainedBytes
+		total.CachesWarming += stats.CachesWarming
+		for key, pair := range stats.Caches {
+			sum, ok := total.Caches[key]
+			if !ok {
+				total.Caches[key] = pair
+				continue
+			}
+			if sum.RetainedBytes >= 0 && pair.RetainedBytes >= 0 {
+				sum.RetainedBytes += pair.RetainedBytes
+			} else {
+				sum.RetainedBytes = -1
+			}
+			sum.BuildNanos += pair.BuildNanos
+			sum.CachedBlocks += pair.CachedBlocks
+			total.Caches[key] = sum
+		}
 	}
-	return &responseEntity, nil
+	return total
 }
 
-// ConvertBiome converts a biome identifier between editions.
-func (c *Converter) ConvertBiome(req BiomeRequest) (*BiomeResponse, error) {
+// ConvertStructure converts a whole .mcstructure or .schem structure, including its
+// palette, block entities and entities, in a single native call. Results are not cached.
+func (c *Converter) ConvertStructure(req StructureRequest) (*StructureResult, error) {
 	nbtReq := nbtRequest{
 		FromVersion: req.FromVersion, ToVersion: req.ToVersion,
 		FromEdition: req.FromEdition, ToEdition: req.ToEdition,
-		Data: req.Data,
+		Data:  structureData{Path: req.Path, Payload: req.Payload, OutputPath: req.OutputPath},
+		Trace: traceFlag(req.Trace),
 	}
 
 	b64Input, err := marshalRequest(nbtReq)
@@ -364,22 +545,13 @@ func (c *Converter) ConvertBiome(req BiomeRequest) (*BiomeResponse, error) {
 		return nil, err
 	}
 
-	cacheKey := "biome:" + b64Input
-	if cached, ok := c.cache.Load(cacheKey); ok {
-		var responseBiome BiomeResponse
-		if err := processResponseString(cached.(string), &responseBiome); err != nil {
-			return nil, err
-		}
-		return &responseBiome, nil
-	}
-
-	res, err := c.dispatch(b64Input, func(thread *C.graal_isolatethread_t, payload any) (any, error) {
+	res, err := c.dispatch(req.ConversionRequest, b64Input, func(thread *C.graal_isolatethread_t, payload any) (any, error) {
 		cInput := C.CString(payload.(string))
 		defer C.free(unsafe.Pointer(cInput))
 
-		cResult := C.convert_biome(thread, cInput)
+		cResult := C.convert_structure(thread, cInput)
 		if cResult == nil {
-			return nil, fmt.Errorf("cgo call to convert_biome returned a null pointer")
+			return nil, fmt.Errorf("cgo call to convert_structure returned a null pointer")
 		}
 		defer C.free_result(thread, cResult)
 
@@ -390,22 +562,50 @@ func (c *Converter) ConvertBiome(req BiomeRequest) (*BiomeResponse, error) {
 		return nil, err
 	}
 
-	b64Result := res.(string)
-	c.cache.Store(cacheKey, b64Result)
-
-	var responseBiome BiomeResponse
-	if err := processResponseString(b64Result, &responseBiome); err != nil {
+	var result StructureResult
+	if err := processResponseString(res.(string), &result, req.Trace); err != nil {
 		return nil, err
 	}
-	return &responseBiome, nil
+	return &result, nil
 }
 
-// ConvertBlockEntity converts a block entity between editions.
-func (c *Converter) ConvertBlockEntity(req BlockEntityRequest) (*BlockEntity, error) {
+// callConvert invokes the native conversion entry point for the given kind.
+func callConvert(thread *C.graal_isolatethread_t, kind Kind, input *C.char) (*C.char, error) {
+	switch kind {
+	case KindBlock:
+		return C.convert_block(thread, input), nil
+	case KindItem:
+		return C.convert_item(thread, input), nil
+	case KindBiome:
+		return C.convert_biome(thread, input), nil
+	case KindEntity:
+		return C.convert_entity(thread, input), nil
+	case KindBlockEntity:
+		return C.convert_block_entity(thread, input), nil
+	default:
+		return nil, fmt.Errorf("unsupported conversion kind %q", kind)
+	}
+}
+
+// ConvertRaw converts already-encoded NBT of the given kind, such as Java network
+// NBT taken straight off the wire, and returns the result encoded in
+// req.OutputEncoding. Results are not cached.
+func (c *Converter) ConvertRaw(kind Kind, req RawRequest) ([]byte, error) {
+	inputEncoding := req.InputEncoding
+	if inputEncoding == "" {
+		inputEncoding = LittleEndianNBT
+	}
+	outputEncoding := req.OutputEncoding
+	if outputEncoding == "" {
+		outputEncoding = inputEncoding
+	}
+
 	nbtReq := nbtRequest{
 		FromVersion: req.FromVersion, ToVersion: req.ToVersion,
 		FromEdition: req.FromEdition, ToEdition: req.ToEdition,
-		Data: req.BlockEntity,
+		Data: req.Data,
+		InputEncoding: inputEncoding, OutputEncoding: outputEncoding,
+		Trace: traceFlag(req.Trace),
 	}
 
 	b64Input, err := marshalRequest(nbtReq)
@@ -413,22 +613,16 @@ func (c *Converter) ConvertBlockEntity(req BlockEntityRequest) (*BlockEntity, er
 		return nil, err
 	}
 
-	cacheKey := "block_entity:" + b64Input
-	if cached, ok := c.cache.Load(cacheKey); ok {
-		var responseBlockEntity BlockEntity
-		if err := processResponseString(cached.(string), &responseBlockEntity); err != nil {
-			return nil, err
-		}
-		return &responseBlockEntity, nil
-	}
-
-	res, err := c.dispatch(b64Input, func(thread *C.graal_isolatethread_t, payload any) (any, error) {
+	res, err := c.dispatch(req.ConversionRequest, b64Input, func(thread *C.graal_isolatethread_t, payload any) (any, error) {
 		cInput := C.CString(payload.(string))
 		defer C.free(unsafe.Pointer(cInput))
 
-		cResult := C.convert_block_entity(thread, cInput)
+		cResult, err := callConvert(thread, kind, cInput)
+		if err != nil {
+			return nil, err
+		}
 		if cResult == nil {
-			return nil, fmt.Errorf("cgo call to convert_block_entity returned a null pointer")
+			return nil, fmt.Errorf("cgo call to convert_%s returned a null pointer", kind)
 		}
 		defer C.free_result(thread, cResult)
 
@@ -439,12 +633,5 @@ func (c *Converter) ConvertBlockEntity(req BlockEntityRequest) (*BlockEntity, er
 		return nil, err
 	}
 
-	b64Result := res.(string)
-	c.cache.Store(cacheKey, b64Result)
-
-	var responseBlockEntity BlockEntity
-	if err := processResponseString(b64Result, &responseBlockEntity); err != nil {
-		return nil, err
-	}
-	return &responseBlockEntity, nil
+	return processRawResponseString(res.(string), req.Trace)
 }
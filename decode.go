@@ -0,0 +1,550 @@
+package crocon
+
+import (
+	"bytes"
+	"encoding/binary"
+	"errors"
+	"fmt"
+	"math"
+
+	"github.com/oriumgames/nbt"
+)
+
+// NBT tag type IDs.
+const (
+	tagTypeEnd byte = iota
+	tagTypeByte
+	tagTypeShort
+	tagTypeInt
+	tagTypeLong
+	tagTypeFloat
+	tagTypeDouble
+	tagTypeByteArray
+	tagTypeString
+	tagTypeList
+	tagTypeCompound
+	tagTypeIntArray
+	tagTypeLongArray
+)
+
+var errTruncated = errors.New("unexpected end of NBT data")
+
+// nbtDecoder is implemented by result types that decode themselves straight
+// from the little-endian NBT of the response's 'data' compound, without
+// reflection or an intermediate map.
+type nbtDecoder interface {
+	decodeNBT(r *nbtReader) error
+}
+
+// decodeResponse decodes a response envelope in a single pass. The 'data'
+// compound is decoded directly into out if it implements nbtDecoder, and
+// otherwise handed to the nbt package as a sub-slice of the response. If trace
+// is set, it is filled from the 'trace' compound, even when the conversion
+// failed.
+func decodeResponse(payload []byte, out any, trace *Trace) error {
+	r := &nbtReader{buf: payload}
+	if t, err := r.byte(); err != nil {
+		return err
+	} else if t != tagTypeCompound {
+		return fmt.Errorf("response root is tag type %d, not a compound", t)
+	}
+	if err := r.skipString(); err != nil {
+		return err
+	}
+
+	fast, isFast := out.(nbtDecoder)
+	var success, warming byte
+	var errMsg, stackTrace string
+	var hasData bool
+	var dataStart, dataEnd int
+	for {
+		t, name, err := r.entry()
+		if err != nil {
+			return err
+		}
+		if t == tagTypeEnd {
+			break
+		}
+		switch {
+		case name == "success" && t == tagTypeByte:
+			success, err = r.byte()
+		case name == "warming" && t == tagTypeByte:
+			warming, err = r.byte()
+		case name == "error" && t == tagTypeString:
+			errMsg, err = r.string()
+		case name == "stackTrace" && t == tagTypeString:
+			stackTrace, err = r.string()
+		case name == "trace" && t == tagTypeCompound && trace != nil:
+			err = trace.decodeNBT(r)
+		case name == "data" && t == tagTypeCompound:
+			hasData = true
+			if isFast {
+				err = fast.decodeNBT(r)
+			} else {
+				dataStart = r.off
+				err = r.skip(t)
+				dataEnd = r.off
+			}
+		default:
+			err = r.skip(t)
+		}
+		if err != nil {
+			return fmt.Errorf("failed to unmarshal NBT response envelope: %w", err)
+		}
+	}
+
+	if success == 0 {
+		return &ConversionError{
+			Message:    errMsg,
+			StackTrace: stackTrace,
+			Warming:    warming != 0,
+		}
+	}
+	if !hasData {
+		return fmt.Errorf("response is missing its 'data' compound")
+	}
+	if isFast {
+		return nil
+	}
+
+	// Give the compound's payload an unnamed root header so the nbt package
+	// can decode it without re-encoding the envelope.
+	data := make([]byte, 0, 3+dataEnd-dataStart)
+	data = append(data, tagTypeCompound, 0, 0)
+	data = append(data, payload[dataStart:dataEnd]...)
+	decoder := nbt.NewDecoderWithEncoding(bytes.NewReader(data), nbt.LittleEndian)
+	if err := decoder.Decode(out); err != nil {
+		return fmt.Errorf("failed to unmarshal 'data' payload into response struct: %w", err)
+	}
+	return nil
+}
+
+// decodeNBT decodes a block compound with an 'id' string and a 'states'
+// compound.
+func (b *Block) decodeNBT(r *nbtReader) error {
+	for {
+		t, name, err := r.entry()
+		if err != nil {
+			return err
+		}
+		switch {
+		case t == tagTypeEnd:
+			return nil
+		case name == "id" && t == tagTypeString:
+			b.ID, err = r.string()
+		case name == "states" && t == tagTypeCompound:
+			b.States, err = r.compound()
+		default:
+			err = r.skip(t)
+		}
+		if err != nil {
+			return err
+		}
+	}
+}
+
+// decodeNBT decodes a biome compound with either a 'name' string or a
+// numeric 'id'.
+func (b *BiomeResponse) decodeNBT(r *nbtReader) error {
+	for {
+		t, name, err := r.entry()
+		if err != nil {
+			return err
+		}
+		switch {
+		case t == tagTypeEnd:
+			return nil
+		case name == "name" && t == tagTypeString:
+			b.Name, err = r.string()
+		case name == "id" && t == tagTypeInt:
+			b.ID, err = r.int32()
+		case name == "id" && t == tagTypeShort:
+			var id int16
+			id, err = r.int16()
+			b.ID = int32(id)
+		case name == "id" && t == tagTypeByte:
+			var id byte
+			id, err = r.byte()
+			b.ID = int32(int8(id))
+		default:
+			err = r.skip(t)
+		}
+		if err != nil {
+			return err
+		}
+	}
+}
+
+// decodeNBT decodes a trace compound of 'long' phase timings.
+func (tr *Trace) decodeNBT(r *nbtReader) error {
+	for {
+		t, name, err := r.entry()
+		if err != nil {
+			return err
+		}
+		if t == tagTypeEnd {
+			return nil
+		}
+		if t != tagTypeLong {
+			if err := r.skip(t); err != nil {
+				return err
+			}
+			continue
+		}
+		v, err := r.int64()
+		if err != nil {
+			return err
+		}
+		switch name {
+		case "decodeNanos":
+			tr.DecodeNanos = v
+		case "parseNanos":
+			tr.ParseNanos = v
+		case "cacheNanos":
+			tr.CacheNanos = v
+		case "convertNanos":
+			tr.ConvertNanos = v
+		case "totalNanos":
+			tr.TotalNanos = v
+		}
+	}
+}
+
+// nbtReader reads little-endian NBT from a byte slice.
+type nbtReader struct {
+	buf []byte
+	off int
+}
+
+func (r *nbtReader) next(n int) ([]byte, error) {
+	if n < 0 || len(r.buf)-r.off < n {
+		return nil, errTruncated
+	}
+	b := r.buf[r.off : r.off+n]
+	r.off += n
+	return b, nil
+}
+
+func (r *nbtReader) byte() (byte, error) {
+	if r.off >= len(r.buf) {
+		return 0, errTruncated
+	}
+	b := r.buf[r.off]
+	r.off++
+	return b, nil
+}
+
+func (r *nbtReader) int16() (int16, error) {
+	b, err := r.next(2)
+	if err != nil {
+		return 0, err
+	}
+	return int16(binary.LittleEndian.Uint16(b)), nil
+}
+
+func (r *nbtReader) int32() (int32, error) {
+	b, err := r.next(4)
+	if err != nil {
+		return 0, err
+	}
+	return int32(binary.LittleEndian.Uint32(b)), nil
+}
+
+func (r *nbtReader) int64() (int64, error) {
+	b, err := r.next(8)
+	if err != nil {
+		return 0, err
+	}
+	return int64(binary.LittleEndian.Uint64(b)), nil
+}
+
+func (r *nbtReader) string() (string, error) {
+	n, err := r.int16()
+	if err != nil {
+		return "", err
+	}
+	b, err := r.next(int(uint16(n)))
+	if err != nil {
+		return "", err
+	}
+	return string(b), nil
+}
+
+func (r *nbtReader) skipString() error {
+	n, err := r.int16()
+	if err != nil {
+		return err
+	}
+	_, err = r.next(int(uint16(n)))
+	return err
+}
+
+// entry reads the type and name of the next compound entry. The name is
+// empty for the terminating TAG_End.
+func (r *nbtReader) entry() (byte, string, error) {
+	t, err := r.byte()
+	if err != nil || t == tagTypeEnd {
+		return t, "", err
+	}
+	name, err := r.string()
+	return t, name, err
+}
+
+// length reads an array or list length.
+func (r *nbtReader) length() (int, error) {
+	n, err := r.int32()
+	if err != nil {
+		return 0, err
+	}
+	if n < 0 {
+		return 0, fmt.Errorf("negative NBT length %d", n)
+	}
+	return int(n), nil
+}
+
+// compound reads the entries of a compound into a map, using the same Go
+// types as the nbt package.
+func (r *nbtReader) compound() (map[string]any, error) {
+	m := make(map[string]any)
+	for {
+		t, name, err := r.entry()
+		if err != nil {
+			return nil, err
+		}
+		if t == tagTypeEnd {
+			return m, nil
+		}
+		if m[name], err = r.value(t); err != nil {
+			return nil, err
+		}
+	}
+}
+
+// value reads the payload of a tag of type t.
+func (r *nbtReader) value(t byte) (any, error) {
+	switch t {
+	case tagTypeByte:
+		return r.byte()
+	case tagTypeShort:
+		return r.int16()
+	case tagTypeInt:
+		return r.int32()
+	case tagTypeLong:
+		return r.int64()
+	case tagTypeFloat:
+		v, err := r.int32()
+		return math.Float32frombits(uint32(v)), err
+	case tagTypeDouble:
+		v, err := r.int64()
+		return math.Float64frombits(uint64(v)), err
+	case tagTypeString:
+		return r.string()
+	case tagTypeByteArray:
+		n, err := r.length()
+		if err != nil {
+			return nil, err
+		}
+		b, err := r.next(n)
+		if err != nil {
+			return nil, err
+		}
+		return bytes.Clone(b), nil
+	case tagTypeIntArray:
+		n, err := r.length()
+		if err != nil {
+			return nil, err
+		}
+		if len(r.buf)-r.off < n*4 {
+			return nil, errTruncated
+		}
+		v := make([]int32, n)
+		for i := range v {
+			v[i], _ = r.int32()
+		}
+		return v, nil
+	case tagTypeLongArray:
+		n, err := r.length()
+		if err != nil {
+			return nil, err
+		}
+		if len(r.buf)-r.off < n*8 {
+			return nil, errTruncated
+		}
+		v := make([]int64, n)
+		for i := range v {
+			v[i], _ = r.int64()
+		}
+		return v, nil
+	case tagTypeList:
+		elemType, err := r.byte()
+		if err != nil {
+			return nil, err
+		}
+		n, err := r.length()
+		if err != nil {
+			return nil, err
+		}
+		v := make([]any, n)
+		for i := range v {
+			if v[i], err = r.value(elemType); err != nil {
+				return nil, err
+			}
+		}
+		return v, nil
+	case tagTypeCompound:
+		return r.compound()
+	default:
+		return nil, fmt.Errorf("unknown NBT tag type %d", t)
+	}
+}
+
+// skip advances past the payload of a tag of type t.
+func (r *nbtReader) skip(t byte) error {
+	var err error
+	switch t {
+	case tagTypeByte:
+		_, err = r.next(1)
+	case tagTypeShort:
+		_, err = r.next(2)
+	case tagTypeInt, tagTypeFloat:
+		_, err = r.next(4)
+	case tagTypeLong, tagTypeDouble:
+		_, err = r.next(8)
+	case tagTypeString:
+		err = r.skipString()
+	case tagTypeByteArray:
+		err = r.skipArray(1)
+	case tagTypeIntArray:
+		err = r.skipArray(4)
+	case tagTypeLongArray:
+		err = r.skipArray(8)
+	case tagTypeList:
+		var elemType byte
+		var n int
+		if elemType, err = r.byte(); err != nil {
+			return err
+		}
+		if n, err = r.length(); err != nil {
+			return err
+		}
+		for i := 0; i < n && err == nil; i++ {
+			err = r.skip(elemType)
+		}
+	case tagTypeCompound:
+		for {
+			var et byte
+			if et, err = r.byte(); err != nil || et == tagTypeEnd {
+				break
+			}
+			if err = r.skipString(); err == nil {
+				err = r.skip(et)
+			}
+			if err != nil {
+				break
+			}
+		}
+	default:
+		err = fmt.Errorf("unknown NBT tag type %d", t)
+	}
+	return err
+}
+
+// skipArray advances past an array of elements of the given size.
+func (r *nbtReader) skipArray(size int) error {
+	n, err := r.length()
+	if err != nil {
+		return err
+	}
+	_, err = r.next(n * size)
+	return err
+}
+
+// splitBatchResponse splits a convert_batch response into one standalone
+// response envelope per request, each decodable with decodeResponse. If the
+// batch as a whole failed, an error is returned so that the requests can be
+// retried on their own rather than sharing, and caching, the batch's failure.
+func splitBatchResponse(payload []byte, n int) ([][]byte, error) {
+	r := &nbtReader{buf: payload}
+	if t, err := r.byte(); err != nil {
+		return nil, err
+	} else if t != tagTypeCompound {
+		return nil, fmt.Errorf("response root is tag type %d, not a compound", t)
+	}
+	if err := r.skipString(); err != nil {
+		return nil, err
+	}
+
+	var success byte
+	var results [][]byte
+	for {
+		t, name, err := r.entry()
+		if err != nil {
+			return nil, err
+		}
+		if t == tagTypeEnd {
+			break
+		}
+		switch {
+		case name == "success" && t == tagTypeByte:
+			success, err = r.byte()
+		case name == "data" && t == tagTypeCompound:
+			results, err = r.batchResults()
+		default:
+			err = r.skip(t)
+		}
+		if err != nil {
+			return nil, fmt.Errorf("failed to unmarshal NBT batch response: %w", err)
+		}
+	}
+
+	if success == 0 {
+		return nil, fmt.Errorf("batch of %d requests failed as a whole", n)
+	}
+	if len(results) != n {
+		return nil, fmt.Errorf("batch response has %d results for %d requests", len(results), n)
+	}
+	return results, nil
+}
+
+// batchResults reads the 'results' list of a batch response's 'data'
+// compound, giving each result an unnamed root header.
+func (r *nbtReader) batchResults() ([][]byte, error) {
+	var results [][]byte
+	for {
+		t, name, err := r.entry()
+		if err != nil {
+			return nil, err
+		}
+		if t == tagTypeEnd {
+			return results, nil
+		}
+		if name != "results" || t != tagTypeList {
+			if err := r.skip(t); err != nil {
+				return nil, err
+			}
+			continue
+		}
+
+		elemType, err := r.byte()
+		if err != nil {
+			return nil, err
+		}
+		n, err := r.length()
+		if err != nil {
+			return nil, err
+		}
+		if n > 0 && elemType != tagTypeCompound {
+			return nil, fmt.Errorf("batch results are tag type %d, not compounds", elemType)
+		}
+		results = make([][]byte, n)
+		for i := range results {
+			start := r.off
+			if err := r.skip(tagTypeCompound); err != nil {
+				return nil, err
+			}
+			result := make([]byte, 0, 3+r.off-start)
+			result = append(result, tagTypeCompound, 0, 0)
+			results[i] = append(result, r.buf[start:r.off]...)
+		}
+	}
+}
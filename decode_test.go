@@ -0,0 +1,268 @@
+package crocon
+
+import (
+	"bytes"
+	"errors"
+	"reflect"
+	"testing"
+
+	"github.com/oriumgames/nbt"
+)
+
+// encodeNBT encodes v as little-endian NBT with the nbt package, so that the
+// hand-written reader is checked against an independent encoder.
+func encodeNBT(t *testing.T, v any) []byte {
+	t.Helper()
+	var buf bytes.Buffer
+	if err := nbt.NewEncoderWithEncoding(&buf, nbt.LittleEndian).Encode(v); err != nil {
+		t.Fatalf("failed to encode fixture: %v", err)
+	}
+	return buf.Bytes()
+}
+
+type blockEnvelope struct {
+	Success byte  `nbt:"success"`
+	Data    Block `nbt:"data"`
+}
+
+type mapEnvelope struct {
+	Success byte           `nbt:"success"`
+	Data    map[string]any `nbt:"data"`
+}
+
+type biomeEnvelope struct {
+	Success byte `nbt:"success"`
+	Data    struct {
+		ID int16 `nbt:"id"`
+	} `nbt:"data"`
+}
+
+type errorEnvelope struct {
+	Success    byte   `nbt:"success"`
+	Warming    byte   `nbt:"warming"`
+	Error      string `nbt:"error"`
+	StackTrace string `nbt:"stackTrace"`
+	Trace      Trace  `nbt:"trace"`
+}
+
+type tracedEnvelope struct {
+	Success byte  `nbt:"success"`
+	Trace   Trace `nbt:"trace"`
+	Data    Block `nbt:"data"`
+}
+
+var testTrace = Trace{DecodeNanos: 1, ParseNanos: 2, CacheNanos: 3, ConvertNanos: 4, TotalNanos: 10}
+
+func TestDecodeResponse(t *testing.T) {
+	block := Block{ID: "minecraft:oak_log", States: map[string]any{"axis": "y", "level": int32(3)}}
+
+	tests := []struct {
+		name      string
+		envelope  any
+		out       func() any
+		want      any
+		wantErr   error
+		wantTrace *Trace
+	}{
+		{
+			name:     "block",
+			envelope: blockEnvelope{Success: 1, Data: block},
+			out:      func() any { return new(Block) },
+			want:     &block,
+		},
+		{
+			name: "map",
+			envelope: mapEnvelope{Success: 1, Data: map[string]any{
+				"id": "minecraft:diamond_sword", "Count": byte(1),
+				"tag": map[string]any{"Damage": int32(5)},
+			}},
+			out: func() any { return new(map[string]any) },
+			want: &map[string]any{
+				"id": "minecraft:diamond_sword", "Count": byte(1),
+				"tag": map[string]any{"Damage": int32(5)},
+			},
+		},
+		{
+			name: "biome with a short id",
+			envelope: func() biomeEnvelope {
+				e := biomeEnvelope{Success: 1}
+				e.Data.ID = 21
+				return e
+			}(),
+			out:  func() any { return new(BiomeResponse) },
+			want: &BiomeResponse{ID: 21},
+		},
+		{
+			name:      "traced",
+			envelope:  tracedEnvelope{Success: 1, Trace: testTrace, Data: block},
+			out:       func() any { return new(Block) },
+			want:      &block,
+			wantTrace: &testTrace,
+		},
+		{
+			name: "conversion error",
+			envelope: errorEnvelope{
+				Warming: 1, Error: "pair is warming", StackTrace: "at Crocon", Trace: testTrace,
+			},
+			out:       func() any { return new(Block) },
+			wantErr:   &ConversionError{Message: "pair is warming", StackTrace: "at Crocon", Warming: true},
+			wantTrace: &testTrace,
+		},
+		{
+			name: "missing data",
+			envelope: struct {
+				Success byte `nbt:"success"`
+			}{Success: 1},
+			out:     func() any { return new(Block) },
+			wantErr: errors.New("response is missing its 'data' compound"),
+		},
+	}
+
+	for _, test := range tests {
+		t.Run(test.name, func(t *testing.T) {
+			payload := encodeNBT(t, test.envelope)
+			out := test.out()
+			var trace Trace
+			err := decodeResponse(payload, out, &trace)
+
+			if test.wantErr != nil {
+				if err == nil || err.Error() != test.wantErr.Error() {
+					t.Fatalf("got error %v, want %v", err, test.wantErr)
+				}
+				var convErr *ConversionError
+				if want, ok := test.wantErr.(*ConversionError); ok {
+					if !errors.As(err, &convErr) || *convErr != *want {
+						t.Fatalf("got error %#v, want %#v", err, want)
+					}
+				}
+			} else if err != nil {
+				t.Fatalf("unexpected error: %v", err)
+			} else if !reflect.DeepEqual(out, test.want) {
+				t.Fatalf("got %#v, want %#v", out, test.want)
+			}
+
+			if test.wantTrace != nil && trace != *test.wantTrace {
+				t.Fatalf("got trace %+v, want %+v", trace, *test.wantTrace)
+			}
+		})
+	}
+}
+
+func TestDecodeResponseWithoutTrace(t *testing.T) {
+	payload := encodeNBT(t, tracedEnvelope{
+		Success: 1, Trace: testTrace, Data: Block{ID: "minecraft:stone", States: map[string]any{}},
+	})
+	var out Block
+	if err := decodeResponse(payload, &out, nil); err != nil {
+		t.Fatalf("unexpected error: %v", err)
+	}
+	if out.ID != "minecraft:stone" {
+		t.Fatalf("got id %q, want minecraft:stone", out.ID)
+	}
+}
+
+func TestDecodeResponseTruncated(t *testing.T) {
+	envelopes := []any{
+		blockEnvelope{Success: 1, Data: Block{ID: "minecraft:water", States: map[string]any{"level": "0"}}},
+		mapEnvelope{Success: 1, Data: map[string]any{
+			"list": []int32{1, 2, 3}, "nested": map[string]any{"s": "x", "d": 1.5},
+		}},
+		tracedEnvelope{Success: 1, Trace: testTrace, Data: Block{ID: "minecraft:stone", States: map[string]any{}}},
+	}
+	for _, envelope := range envelopes {
+		payload := encodeNBT(t, envelope)
+		for n := 0; n < len(payload); n++ {
+			var out Block
+			var trace Trace
+			err := decodeResponse(payload[:n], &out, &trace)
+			if !errors.Is(err, errTruncated) {
+				t.Fatalf("%T truncated to %d of %d bytes: got error %v, want %v",
+					envelope, n, len(payload), err, errTruncated)
+			}
+		}
+	}
+}
+
+func TestDecodeResponseCorrupt(t *testing.T) {
+	tests := []struct {
+		name    string
+		payload []byte
+	}{
+		{"empty", nil},
+		{"root is not a compound", []byte{tagTypeString, 0, 0, 0, 0}},
+		{"unknown tag type", []byte{tagTypeCompound, 0, 0, 99, 1, 0, 'x', tagTypeEnd}},
+		{"negative list length", []byte{
+			tagTypeCompound, 0, 0,
+			tagTypeList, 1, 0, 'x', tagTypeByte, 0xFF, 0xFF, 0xFF, 0xFF,
+			tagTypeEnd,
+		}},
+		{"string longer than the payload", []byte{
+			tagTypeCompound, 0, 0,
+			tagTypeString, 5, 0, 'e', 'r', 'r', 'o', 'r', 0xFF, 0xFF, 'x',
+			tagTypeEnd,
+		}},
+	}
+	for _, test := range tests {
+		t.Run(test.name, func(t *testing.T) {
+			var out Block
+			if err := decodeResponse(test.payload, &out, nil); err == nil {
+				t.Fatalf("decoded corrupt payload without an error")
+			}
+		})
+	}
+}
+
+type batchEnvelope struct {
+	Success byte `nbt:"success"`
+	Data    struct {
+		Results []blockEnvelope `nbt:"results"`
+	} `nbt:"data"`
+}
+
+func TestSplitBatchResponse(t *testing.T) {
+	blocks := []Block{
+		{ID: "minecraft:stone", States: map[string]any{}},
+		{ID: "minecraft:oak_log", States: map[string]any{"axis": "x"}},
+		{ID: "minecraft:water", States: map[string]any{"level": "0"}},
+	}
+	batch := batchEnvelope{Success: 1}
+	for _, block := range blocks {
+		batch.Data.Results = append(batch.Data.Results, blockEnvelope{Success: 1, Data: block})
+	}
+	payload := encodeNBT(t, batch)
+
+	results, err := splitBatchResponse(payload, len(blocks))
+	if err != nil {
+		t.Fatalf("unexpected error: %v", err)
+	}
+	if len(results) != len(blocks) {
+		t.Fatalf("got %d results, want %d", len(results), len(blocks))
+	}
+	for i, result := range results {
+		var out Block
+		if err := decodeResponse(result, &out, nil); err != nil {
+			t.Fatalf("result %d: unexpected error: %v", i, err)
+		}
+		if !reflect.DeepEqual(out, blocks[i]) {
+			t.Fatalf("result %d: got %#v, want %#v", i, out, blocks[i])
+		}
+	}
+
+	if _, err := splitBatchResponse(payload, len(blocks)+1); err == nil {
+		t.Fatalf("accepted a batch with fewer results than requests")
+	}
+
+	failed := encodeNBT(t, struct {
+		Success byte   `nbt:"success"`
+		Error   string `nbt:"error"`
+	}{Error: "boom"})
+	if _, err := splitBatchResponse(failed, len(blocks)); err == nil {
+		t.Fatalf("accepted a batch that failed as a whole")
+	}
+
+	for n := 0; n < len(payload); n++ {
+		if _, err := splitBatchResponse(payload[:n], len(blocks)); !errors.Is(err, errTruncated) {
+			t.Fatalf("truncated to %d of %d bytes: got error %v, want %v", n, len(payload), err, errTruncated)
+		}
+	}
+}
@@ -0,0 +1,129 @@
+package crocon
+
+import (
+	"bytes"
+	"encoding/binary"
+	"fmt"
+	"math"
+
+	"github.com/oriumgames/nbt"
+)
+
+// nbtWriter assembles little-endian NBT from pre-encoded compound payloads, so
+// that request data encoded once by the caller can be wrapped in either a
+// single-request or a batch envelope without being encoded again.
+// The first string too long for NBT is recorded in err.
+type nbtWriter struct {
+	buf []byte
+	err error
+}
+
+func (w *nbtWriter) header(t byte, name string) {
+	w.buf = append(w.buf, t)
+	w.rawString(name)
+}
+
+// rawString writes a string with its uint16 length prefix.
+func (w *nbtWriter) rawString(s string) {
+	if len(s) > math.MaxUint16 {
+		if w.err == nil {
+			w.err = fmt.Errorf("NBT string of %d bytes exceeds the %d byte limit", len(s), math.MaxUint16)
+		}
+		s = ""
+	}
+	w.buf = binary.LittleEndian.AppendUint16(w.buf, uint16(len(s)))
+	w.buf = append(w.buf, s...)
+}
+
+// beginCompound starts a named compound, which must be closed with end.
+func (w *nbtWriter) beginCompound(name string) {
+	w.header(tagTypeCompound, name)
+}
+
+// beginList starts a named list of n elements of type elemType.
+func (w *nbtWriter) beginList(name string, elemType byte, n int) {
+	w.header(tagTypeList, name)
+	w.buf = append(w.buf, elemType)
+	w.buf = binary.LittleEndian.AppendUint32(w.buf, uint32(n))
+}
+
+// end closes the current compound.
+func (w *nbtWriter) end() {
+	w.buf = append(w.buf, tagTypeEnd)
+}
+
+func (w *nbtWriter) string(name, value string) {
+	w.header(tagTypeString, name)
+	w.rawString(value)
+}
+
+// compound writes a named compound whose entries and closing TAG_End are
+// already encoded in payload.
+func (w *nbtWriter) compound(name string, payload []byte) {
+	w.beginCompound(name)
+	w.buf = append(w.buf, payload...)
+}
+
+// versions writes the version pair and editions of an envelope.
+func (w *nbtWriter) versions(req ConversionRequest) {
+	w.string("fromVersion", req.FromVersion)
+	w.string("toVersion", req.ToVersion)
+	w.string("fromEdition", string(req.FromEdition))
+	w.string("toEdition", string(req.ToEdition))
+}
+
+// encodeCompoundPayload encodes v as an NBT compound and returns its entries
+// and closing TAG_End, without the root type and name.
+func encodeCompoundPayload(v any) ([]byte, error) {
+	var buf bytes.Buffer
+	encoder := nbt.NewEncoderWithEncoding(&buf, nbt.LittleEndian)
+	if err := encoder.Encode(v); err != nil {
+		return nil, fmt.Errorf("failed to marshal request to Bedrock NBT: %w", err)
+	}
+
+	b := buf.Bytes()
+	if len(b) < 3 || b[0] != tagTypeCompound {
+		return nil, fmt.Errorf("request data did not encode to an NBT compound")
+	}
+	nameLen := int(binary.LittleEndian.Uint16(b[1:3]))
+	if len(b) < 3+nameLen {
+		return nil, errTruncated
+	}
+	return b[3+nameLen:], nil
+}
+
+// encodeEnvelope wraps encoded data in a single-request envelope.
+func encodeEnvelope(req ConversionRequest, data []byte) ([]byte, error) {
+	w := nbtWriter{buf: make([]byte, 0, 96+len(data))}
+	w.beginCompound("")
+	w.versions(req)
+	w.compound("data", data)
+	w.end()
+	return w.buf, w.err
+}
+
+// encodeBatch wraps the data of several requests for the same version pair in
+// a single convert_batch envelope.
+func encodeBatch(items []*batchItem) ([]byte, error) {
+	size := 96
+	for _, item := range items {
+		size += 64 + len(item.data)
+	}
+
+	w := nbtWriter{buf: make([]byte, 0, size)}
+	w.beginCompound("")
+	w.versions(items[0].req)
+	w.beginCompound("data")
+	w.beginList("requests", tagTypeCompound, len(items))
+	for _, item := range items {
+		// List elements are compounds without a type or name.
+		w.string("type", string(item.kind))
+		w.string("fromEdition", string(item.req.FromEdition))
+		w.string("toEdition", string(item.req.ToEdition))
+		w.compound("data", item.data)
+		w.end()
+	}
+	w.end()
+	w.end()
+	return w.buf, w.err
+}
@@ -0,0 +1,124 @@
+package crocon
+
+import (
+	"bytes"
+	"math"
+	"reflect"
+	"strings"
+	"testing"
+
+	"github.com/oriumgames/nbt"
+)
+
+var testPair = ConversionRequest{
+	FromVersion: "1.21.10", ToVersion: "1.21.120",
+	FromEdition: JavaEdition, ToEdition: BedrockEdition,
+}
+
+// decodeNBT decodes little-endian NBT with the nbt package.
+func decodeNBT(t *testing.T, payload []byte, out any) {
+	t.Helper()
+	if err := nbt.NewDecoderWithEncoding(bytes.NewReader(payload), nbt.LittleEndian).Decode(out); err != nil {
+		t.Fatalf("failed to decode %d bytes: %v", len(payload), err)
+	}
+}
+
+func TestEncodeEnvelope(t *testing.T) {
+	data := map[string]any{"id": "minecraft:oak_log", "states": map[string]any{"axis": "y"}}
+	payload, err := encodeCompoundPayload(data)
+	if err != nil {
+		t.Fatalf("unexpected error: %v", err)
+	}
+	envelope, err := encodeEnvelope(testPair, payload)
+	if err != nil {
+		t.Fatalf("unexpected error: %v", err)
+	}
+
+	var got map[string]any
+	decodeNBT(t, envelope, &got)
+	want := map[string]any{
+		"fromVersion": "1.21.10", "toVersion": "1.21.120",
+		"fromEdition": "java", "toEdition": "bedrock",
+		"data": data,
+	}
+	if !reflect.DeepEqual(got, want) {
+		t.Fatalf("got %#v, want %#v", got, want)
+	}
+}
+
+func TestEncodeBatch(t *testing.T) {
+	var items []*batchItem
+	var want []any
+	for i, kind := range []Kind{KindBlock, KindItem, KindBiome} {
+		data := map[string]any{"id": "minecraft:stone", "index": int32(i)}
+		payload, err := encodeCompoundPayload(data)
+		if err != nil {
+			t.Fatalf("unexpected error: %v", err)
+		}
+		items = append(items, &batchItem{kind: kind, req: testPair, data: payload})
+		want = append(want, map[string]any{
+			"type": string(kind), "fromEdition": "java", "toEdition": "bedrock", "data": data,
+		})
+	}
+	batch, err := encodeBatch(items)
+	if err != nil {
+		t.Fatalf("unexpected error: %v", err)
+	}
+
+	var got struct {
+		FromVersion string `nbt:"fromVersion"`
+		ToVersion   string `nbt:"toVersion"`
+		Data        struct {
+			Requests []any `nbt:"requests"`
+		} `nbt:"data"`
+	}
+	decodeNBT(t, batch, &got)
+	if got.FromVersion != testPair.FromVersion || got.ToVersion != testPair.ToVersion {
+		t.Fatalf("got versions %q to %q, want %q to %q",
+			got.FromVersion, got.ToVersion, testPair.FromVersion, testPair.ToVersion)
+	}
+	if !reflect.DeepEqual(got.Data.Requests, want) {
+		t.Fatalf("got requests %#v, want %#v", got.Data.Requests, want)
+	}
+}
+
+func TestEncodeLongStrings(t *testing.T) {
+	payload, err := encodeCompoundPayload(map[string]any{"id": "minecraft:stone"})
+	if err != nil {
+		t.Fatalf("unexpected error: %v", err)
+	}
+
+	tests := []struct {
+		name    string
+		length  int
+		wantErr bool
+	}{
+		{"at the limit", math.MaxUint16, false},
+		{"over the limit", math.MaxUint16 + 1, true},
+	}
+	for _, test := range tests {
+		t.Run(test.name, func(t *testing.T) {
+			req := testPair
+			req.FromVersion = strings.Repeat("1", test.length)
+
+			envelope, err := encodeEnvelope(req, payload)
+			if (err != nil) != test.wantErr {
+				t.Fatalf("encodeEnvelope: got error %v, want error %t", err, test.wantErr)
+			}
+			if err == nil {
+				var got struct {
+					FromVersion string `nbt:"fromVersion"`
+				}
+				decodeNBT(t, envelope, &got)
+				if got.FromVersion != req.FromVersion {
+					t.Fatalf("got a %d byte version, want %d bytes", len(got.FromVersion), test.length)
+				}
+			}
+
+			_, err = encodeBatch([]*batchItem{{kind: KindBlock, req: req, data: payload}})
+			if (err != nil) != test.wantErr {
+				t.Fatalf("encodeBatch: got error %v, want error %t", err, test.wantErr)
+			}
+		})
+	}
+}
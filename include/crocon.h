@@ -10,6 +10,20 @@
  * They return a pointer to a newly allocated, null-terminated C string
  * containing the result. This result string MUST be freed by the caller
  * by passing the pointer to the free_result() function to avoid memory leaks.
+ *
+ * The request "data" may also be a byte array holding NBT in the encoding
+ * named by "inputEncoding": "little_endian", "big_endian" or
+ * "network_big_endian" (Java network NBT with an unnamed root). Setting
+ * "outputEncoding" returns the converted "data" as a byte array in that
+ * encoding instead of a nested compound.
+ *
+ * When the library runs with CROCON_ASYNC_WARMUP=1, a request for a version
+ * pair that is still being built fails after CROCON_WARMUP_WAIT_MS with the
+ * byte field "warming" set to 1 in the response, and can be retried later.
+ *
+ * Setting the byte field "trace" to 1 in the request envelope adds a "trace"
+ * compound to the response with the nanoseconds spent decoding, parsing,
+ * resolving the version pair cache and converting.
  */
 char* convert_block(graal_isolatethread_t*, char*);
 char* convert_item(graal_isolatethread_t*, char*);
@@ -17,6 +31,47 @@ char* convert_biome(graal_isolatethread_t*, char*);
 char* convert_entity(graal_isolatethread_t*, char*);
 char* convert_block_entity(graal_isolatethread_t*, char*);
 
+/**
+ * Converts many items in one call. The request "data" holds a "requests"
+ * list of compounds, each with a "type" (block, item, biome, entity or
+ * block_entity), a "data" compound and optional per-request "fromVersion",
+ * "toVersion", "fromEdition" and "toEdition" overrides. The response "data"
+ * holds a "results" list with one success or error envelope per request, in
+ * order. Large batches, or batches with the byte "parallel" set to 1, are
+ * converted on an internal fork-join pool sized by CROCON_PARALLELISM.
+ */
+char* convert_batch(graal_isolatethread_t*, char*);
+
+/**
+ * Converts a whole structure in one call. Bedrock structures are .mcstructure
+ * files and Java structures are Sponge .schem files. The request "data"
+ * holds either a "path" string or a "payload" byte array, and optionally an
+ * "outputPath" to write the converted file to instead of returning it.
+ */
+char* convert_structure(graal_isolatethread_t*, char*);
+
+/**
+ * Returns a Base64-encoded NBT envelope describing the isolate heap usage
+ * and the approximate retained size of every cached version pair.
+ * The result MUST be freed with free_result().
+ */
+char* memory_stats(graal_isolatethread_t*);
+
+/**
+ * Sets the number of threads used for parallel multi-item conversions in
+ * the isolate. Must be called before the first such conversion and is
+ * ignored when CROCON_PARALLELISM is set.
+ */
+void set_parallelism(graal_isolatethread_t*, int);
+
+/**
+ * Writes out diagnostics such as the CROCON_JFR_FILE recording, which would
+ * otherwise only be written on JVM shutdown, and stops the isolate's idle
+ * background threads so tear-down does not wait for them to time out. Call
+ * it before graal_tear_down_isolate(); the isolate cannot convert afterwards.
+ */
+void prepare_tear_down(graal_isolatethread_t*);
+
 /**
  * Frees the memory for a result pointer that was returned by one of
  * the convert_* functions.
@@ -33,6 +33,13 @@ java {
     }
 }
 
+sourceSets {
+    create("bench") {
+        compileClasspath += sourceSets.main.get().output + sourceSets.main.get().compileClasspath
+        runtimeClasspath += sourceSets.main.get().output + sourceSets.main.get().runtimeClasspath
+    }
+}
+
 dependencies {
     compileOnly("org.graalvm.sdk:graal-sdk:25.0.1")
     implementation("chunker:chunker-cli:1.13.0")
@@ -49,3 +56,12 @@ tasks.named<com.github.jengelman.gradle.plugins.shadow.tasks.ShadowJar>("shadowJ
     exclude("com/oracle/svm/**")
 }
 
+
+tasks.register<JavaExec>("sweep") {
+    group = "verification"
+    description = "Converts every block state, item and biome in both directions and writes a golden file."
+    classpath = sourceSets["bench"].runtimeClasspath
+    mainClass = "games.orium.bench.ConversionSweep"
+    jvmArgs("-Xss50m")
+    args = (project.findProperty("sweepArgs") as String?)?.split(" ") ?: emptyList()
+}
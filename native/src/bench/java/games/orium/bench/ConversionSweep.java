@@ -0,0 +1,540 @@
+package games.orium.bench;
+
+import com.hivemc.chunker.conversion.intermediate.column.chunk.identifier.ChunkerBlockIdentifier;
+import com.hivemc.chunker.conversion.intermediate.column.chunk.identifier.type.block.ChunkerVanillaBlockType;
+import com.hivemc.chunker.conversion.intermediate.column.chunk.identifier.type.block.states.BlockState;
+import com.hivemc.chunker.conversion.intermediate.column.chunk.identifier.type.block.states.BlockStateValue;
+import com.hivemc.chunker.conversion.intermediate.column.chunk.identifier.type.item.ChunkerItemType;
+import com.hivemc.chunker.conversion.intermediate.column.chunk.itemstack.ChunkerItemStack;
+import com.hivemc.chunker.mapping.identifier.Identifier;
+import com.hivemc.chunker.nbt.tags.Tag;
+import com.hivemc.chunker.nbt.tags.collection.CompoundTag;
+import games.orium.cache.CacheManager;
+import games.orium.cache.ResolverCache;
+import games.orium.conversion.BiomeConverter;
+import games.orium.conversion.BlockConverter;
+import games.orium.conversion.ConversionService.ConversionFunction;
+import games.orium.conversion.ItemConverter;
+import games.orium.util.Edition;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Runs every block state, item and biome known to Chunker through the
+ * converters in both directions for a set of version pairs.
+ * <p>
+ * Reports throughput and per-type latency percentiles, writes a sorted golden
+ * file with one line per conversion and, when given a previous golden file,
+ * reports every mapping that changed.
+ * <p>
+ * Usage: {@code ConversionSweep [--pairs java:bedrock,...] [--golden file]
+ * [--compare file] [--warmup n] [--max-states n]}
+ * <p>
+ * Blocks with more than {@code --max-states} states (default 4096, 0 for no
+ * limit) are only partly swept and listed at the end of the report.
+ */
+public class ConversionSweep {
+
+    private static final String DEFAULT_PAIRS = "1.21.10:1.21.120";
+    private static final String DEFAULT_GOLDEN = "build/sweep/golden.tsv";
+    private static final int MAX_REPORTED_DIFFS = 50;
+
+    private final Map<String, LatencyRecorder> recorders = new TreeMap<>();
+    private final List<String> golden = new ArrayList<>();
+    private final Map<String, Long> truncatedBlocks = new TreeMap<>();
+    private final int maxStatesPerBlock;
+    private boolean recording;
+
+    private ConversionSweep(int maxStatesPerBlock) {
+        this.maxStatesPerBlock =
+            maxStatesPerBlock > 0 ? maxStatesPerBlock : Integer.MAX_VALUE;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = parseOptions(args);
+        String[] pairs = options
+            .getOrDefault("pairs", DEFAULT_PAIRS)
+            .split(",");
+        Path goldenPath = Path.of(
+            options.getOrDefault("golden", DEFAULT_GOLDEN)
+        );
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "1"));
+        int maxStates = Integer.parseInt(
+            options.getOrDefault("max-states", "4096")
+        );
+
+        ConversionSweep sweep = new ConversionSweep(maxStates);
+        long totalNanos = 0;
+        for (String pair : pairs) {
+            String[] versions = pair.trim().split(":");
+            if (versions.length != 2) {
+                throw new IllegalArgumentException(
+                    "Version pair must be java:bedrock, got: " + pair
+                );
+            }
+            ResolverCache cache = CacheManager.getOrCreateCache(
+                versions[0],
+                versions[1]
+            );
+
+            sweep.recording = false;
+            for (int i = 0; i < warmup; i++) {
+                sweep.sweep(pair, cache);
+            }
+
+            sweep.recording = true;
+            long start = System.nanoTime();
+            sweep.sweep(pair, cache);
+            totalNanos += System.nanoTime() - start;
+        }
+
+        sweep.report(totalNanos);
+        sweep.writeGolden(goldenPath);
+
+        String compare = options.get("compare");
+        if (compare != null && !sweep.compare(Path.of(compare))) {
+            System.exit(1);
+        }
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                throw new IllegalArgumentException(
+                    "Expected --option value, got: " + args[i]
+                );
+            }
+            options.put(args[i].substring(2), args[++i]);
+        }
+        return options;
+    }
+
+    private void sweep(String pair, ResolverCache cache) {
+        sweepBlocks(pair, cache);
+        sweepItems(pair, cache);
+        sweepBiomes(pair, cache);
+    }
+
+    private void sweepBlocks(String pair, ResolverCache cache) {
+        for (ChunkerVanillaBlockType type : ChunkerVanillaBlockType.values()) {
+            for (ChunkerBlockIdentifier block : enumerateStates(type)) {
+                cache.javaResolvers
+                    .writeBlockIdentifier(block, true)
+                    .ifPresent(id ->
+                        run(
+                            pair,
+                            "block",
+                            cache,
+                            Edition.JAVA,
+                            Edition.BEDROCK,
+                            toTag(id),
+                            BlockConverter::convert
+                        )
+                    );
+                cache.bedrockResolvers
+                    .writeBlockIdentifier(block, true)
+                    .ifPresent(id ->
+                        run(
+                            pair,
+                            "block",
+                            cache,
+                            Edition.BEDROCK,
+                            Edition.JAVA,
+                            toTag(id),
+                            BlockConverter::convert
+                        )
+                    );
+            }
+        }
+    }
+
+    private void sweepItems(String pair, ResolverCache cache) {
+        List<ChunkerItemStack> stacks = new ArrayList<>();
+        for (ChunkerItemType type : ChunkerItemType.values()) {
+            stacks.add(new ChunkerItemStack(type));
+        }
+        for (ChunkerVanillaBlockType type : ChunkerVanillaBlockType.values()) {
+            stacks.add(new ChunkerItemStack(new ChunkerBlockIdentifier(type)));
+        }
+
+        for (ChunkerItemStack stack : stacks) {
+            cache.javaItemStackResolver
+                .from(stack)
+                .ifPresent(nbt ->
+                    run(
+                        pair,
+                        "item",
+                        cache,
+                        Edition.JAVA,
+                        Edition.BEDROCK,
+                        nbt,
+                        ItemConverter::convert
+                    )
+                );
+            cache.bedrockItemStackResolver
+                .from(stack)
+                .ifPresent(nbt ->
+                    run(
+                        pair,
+                        "item",
+                        cache,
+                        Edition.BEDROCK,
+                        Edition.JAVA,
+                        nbt,
+                        ItemConverter::convert
+                    )
+                );
+        }
+    }
+
+    private void sweepBiomes(String pair, ResolverCache cache) {
+        // Bedrock biome IDs are a single byte, so probe the full range and
+        // feed every Java name that comes out back in the other direction
+        Set<String> javaNames = new LinkedHashSet<>();
+        for (int id = 0; id < 256; id++) {
+            CompoundTag input = new CompoundTag();
+            input.put("id", id);
+            CompoundTag output = run(
+                pair,
+                "biome",
+                cache,
+                Edition.BEDROCK,
+                Edition.JAVA,
+                input,
+                BiomeConverter::convert
+            );
+            if (output != null) {
+                javaNames.add(output.getString("name"));
+            }
+        }
+
+        for (String name : javaNames) {
+            CompoundTag input = new CompoundTag();
+            input.put("name", name);
+            run(
+                pair,
+                "biome",
+                cache,
+                Edition.JAVA,
+                Edition.BEDROCK,
+                input,
+                BiomeConverter::convert
+            );
+        }
+    }
+
+    private CompoundTag run(
+        String pair,
+        String type,
+        ResolverCache cache,
+        Edition fromEdition,
+        Edition toEdition,
+        CompoundTag input,
+        ConversionFunction conversion
+    ) {
+        CompoundTag output = null;
+        Exception error = null;
+        long start = System.nanoTime();
+        try {
+            output = conversion.convert(cache, fromEdition, toEdition, input);
+        } catch (Exception e) {
+            error = e;
+        }
+        long elapsed = System.nanoTime() - start;
+
+        if (recording) {
+            // Formatted outside the timed region so it does not count
+            // towards the conversion latency
+            String outcome = error == null
+                ? format(output)
+                : "ERROR " +
+                    error.getClass().getSimpleName() +
+                    ": " +
+                    error.getMessage();
+            String direction = fromEdition.getName() + "->" + toEdition.getName();
+            recorders
+                .computeIfAbsent(type + " " + direction, _ ->
+                    new LatencyRecorder()
+                )
+                .record(elapsed, output != null);
+            golden.add(
+                pair +
+                    '\t' +
+                    type +
+                    '\t' +
+                    direction +
+                    '\t' +
+                    format(input) +
+                    '\t' +
+                    outcome
+            );
+        }
+        return output;
+    }
+
+    private List<ChunkerBlockIdentifier> enumerateStates(
+        ChunkerVanillaBlockType type
+    ) {
+        List<BlockState<?>> states = new ArrayList<>(type.getStates());
+        List<ChunkerBlockIdentifier> identifiers = new ArrayList<>();
+        enumerateStates(type, states, 0, new HashMap<>(), identifiers);
+
+        long total = 1;
+        for (BlockState<?> state : states) {
+            total = saturatedMultiply(total, state.getValues().size());
+        }
+        if (total > identifiers.size()) {
+            truncatedBlocks.put(type.name(), total);
+        }
+        return identifiers;
+    }
+
+    private static long saturatedMultiply(long a, long b) {
+        long high = Math.multiplyHigh(a, b);
+        long low = a * b;
+        return high != 0 || low < 0 ? Long.MAX_VALUE : low;
+    }
+
+    private void enumerateStates(
+        ChunkerVanillaBlockType type,
+        List<BlockState<?>> states,
+        int index,
+        Map<BlockState<?>, BlockStateValue> current,
+        List<ChunkerBlockIdentifier> identifiers
+    ) {
+        if (identifiers.size() >= maxStatesPerBlock) {
+            return;
+        }
+        if (index == states.size()) {
+            identifiers.add(
+                new ChunkerBlockIdentifier(type, new HashMap<>(current))
+            );
+            return;
+        }
+
+        BlockState<?> state = states.get(index);
+        for (BlockStateValue value : state.getValues()) {
+            current.put(state, value);
+            enumerateStates(type, states, index + 1, current, identifiers);
+        }
+        current.remove(state);
+    }
+
+    private static CompoundTag toTag(Identifier identifier) {
+        CompoundTag tag = new CompoundTag();
+        tag.put("id", identifier.getIdentifier());
+        if (!identifier.getStates().isEmpty()) {
+            CompoundTag states = new CompoundTag();
+            identifier
+                .getStates()
+                .forEach((key, value) -> states.put(key, value.toNBT()));
+            tag.put("states", states);
+        }
+        return tag;
+    }
+
+    /**
+     * Format a value with compound keys sorted, so the same NBT always
+     * produces the same golden line regardless of insertion order.
+     */
+    private static String format(Object value) {
+        if (value instanceof CompoundTag compound) {
+            Map<String, String> sorted = new TreeMap<>();
+            for (Map.Entry<String, Tag<?>> entry : compound) {
+                sorted.put(entry.getKey(), format(entry.getValue()));
+            }
+            StringBuilder builder = new StringBuilder("{");
+            sorted.forEach((key, formatted) -> {
+                if (builder.length() > 1) {
+                    builder.append(',');
+                }
+                builder.append(key).append('=').append(formatted);
+            });
+            return builder.append('}').toString();
+        }
+        if (value instanceof Tag<?> tag) {
+            return format(tag.getBoxedValue());
+        }
+        if (value instanceof Iterable<?> iterable) {
+            List<String> formatted = new ArrayList<>();
+            iterable.forEach(element -> formatted.add(format(element)));
+            return formatted.toString();
+        }
+        if (value instanceof byte[] bytes) {
+            return Arrays.toString(bytes);
+        }
+        if (value instanceof int[] ints) {
+            return Arrays.toString(ints);
+        }
+        if (value instanceof long[] longs) {
+            return Arrays.toString(longs);
+        }
+        if (value instanceof String string) {
+            return '"' + string + '"';
+        }
+        return String.valueOf(value);
+    }
+
+    private void report(long totalNanos) {
+        long conversions = 0;
+        System.out.printf(
+            "%-26s %8s %8s %9s %9s %9s %9s %9s%n",
+            "type",
+            "count",
+            "failed",
+            "p50(us)",
+            "p90(us)",
+            "p99(us)",
+            "p999(us)",
+            "max(us)"
+        );
+        for (Map.Entry<String, LatencyRecorder> entry : recorders.entrySet()) {
+            LatencyRecorder recorder = entry.getValue();
+            conversions += recorder.count();
+            System.out.printf(
+                "%-26s %8d %8d %9.1f %9.1f %9.1f %9.1f %9.1f%n",
+                entry.getKey(),
+                recorder.count(),
+                recorder.failures(),
+                recorder.percentile(0.50) / 1e3,
+                recorder.percentile(0.90) / 1e3,
+                recorder.percentile(0.99) / 1e3,
+                recorder.percentile(0.999) / 1e3,
+                recorder.percentile(1.0) / 1e3
+            );
+        }
+        System.out.printf(
+            "%d conversions in %.1f ms (%.0f conversions/s)%n",
+            conversions,
+            totalNanos / 1e6,
+            conversions / (totalNanos / 1e9)
+        );
+
+        if (!truncatedBlocks.isEmpty()) {
+            System.out.printf(
+                "%d blocks truncated to %d states (raise --max-states, or " +
+                "pass 0, to sweep them fully):%n",
+                truncatedBlocks.size(),
+                maxStatesPerBlock
+            );
+            truncatedBlocks.forEach((block, total) ->
+                System.out.printf("  %s (%d states)%n", block, total)
+            );
+        }
+    }
+
+    private void writeGolden(Path path) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        List<String> lines = new ArrayList<>(golden);
+        lines.sort(null);
+        Files.write(path, lines, StandardCharsets.UTF_8);
+        System.out.println("Wrote " + lines.size() + " lines to " + path);
+    }
+
+    /**
+     * Compare this run with a previous golden file.
+     *
+     * @return Whether every conversion produced the same output.
+     */
+    private boolean compare(Path previousPath) throws IOException {
+        Map<String, String> previous = index(
+            Files.readAllLines(previousPath, StandardCharsets.UTF_8)
+        );
+        Map<String, String> current = index(golden);
+
+        List<String> diffs = new ArrayList<>();
+        for (Map.Entry<String, String> entry : current.entrySet()) {
+            String before = previous.get(entry.getKey());
+            if (before == null) {
+                diffs.add("+ " + entry.getKey() + " => " + entry.getValue());
+            } else if (!before.equals(entry.getValue())) {
+                diffs.add(
+                    "~ " +
+                        entry.getKey() +
+                        " => " +
+                        before +
+                        " -> " +
+                        entry.getValue()
+                );
+            }
+        }
+        for (Map.Entry<String, String> entry : previous.entrySet()) {
+            if (!current.containsKey(entry.getKey())) {
+                diffs.add("- " + entry.getKey() + " => " + entry.getValue());
+            }
+        }
+
+        diffs
+            .stream()
+            .sorted()
+            .limit(MAX_REPORTED_DIFFS)
+            .forEach(System.out::println);
+        System.out.println(
+            diffs.size() + " mapping differences against " + previousPath
+        );
+        return diffs.isEmpty();
+    }
+
+    private static Map<String, String> index(List<String> lines) {
+        Map<String, String> indexed = new HashMap<>();
+        for (String line : lines) {
+            int split = line.lastIndexOf('\t');
+            if (split > 0) {
+                indexed.put(line.substring(0, split), line.substring(split + 1));
+            }
+        }
+        return indexed;
+    }
+
+    private static class LatencyRecorder {
+
+        private long[] samples = new long[1024];
+        private int count;
+        private int failures;
+        private boolean sorted;
+
+        void record(long nanos, boolean success) {
+            if (count == samples.length) {
+                samples = Arrays.copyOf(samples, count * 2);
+            }
+            samples[count++] = nanos;
+            if (!success) {
+                failures++;
+            }
+            sorted = false;
+        }
+
+        int count() {
+            return count;
+        }
+
+        int failures() {
+            return failures;
+        }
+
+        long percentile(double quantile) {
+            if (count == 0) {
+                return 0;
+            }
+            if (!sorted) {
+                Arrays.sort(samples, 0, count);
+                sorted = true;
+            }
+            int index = (int) Math.ceil(quantile * count) - 1;
+            return samples[Math.max(0, Math.min(count - 1, index))];
+        }
+    }
+}
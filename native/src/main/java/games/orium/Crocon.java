@@ -1,11 +1,16 @@
 package games.orium;
 
+import games.orium.cache.CacheManager;
+import games.orium.conversion.BatchConverter;
 import games.orium.conversion.BiomeConverter;
 import games.orium.conversion.BlockConverter;
 import games.orium.conversion.BlockEntityConverter;
 import games.orium.conversion.ConversionService;
 import games.orium.conversion.EntityConverter;
 import games.orium.conversion.ItemConverter;
+import games.orium.conversion.StructureConverter;
+import games.orium.trace.ConversionTrace;
+import games.orium.util.ParallelExecutor;
 import org.graalvm.nativeimage.IsolateThread;
 import org.graalvm.nativeimage.UnmanagedMemory;
 import org.graalvm.nativeimage.c.function.CEntryPoint;
@@ -22,6 +27,7 @@ public class Crocon {
         CCharPointer base64Input
     ) {
         return ConversionService.processConversion(
+            "block",
             base64Input,
             BlockConverter::convert
         );
@@ -36,6 +42,7 @@ public class Crocon {
         CCharPointer base64Input
     ) {
         return ConversionService.processConversion(
+            "item",
             base64Input,
             ItemConverter::convert
         );
@@ -50,6 +57,7 @@ public class Crocon {
         CCharPointer base64Input
     ) {
         return ConversionService.processConversion(
+            "biome",
             base64Input,
             BiomeConverter::convert
         );
@@ -64,6 +72,7 @@ public class Crocon {
         CCharPointer base64Input
     ) {
         return ConversionService.processConversion(
+            "entity",
             base64Input,
             EntityConverter::convert
         );
@@ -78,11 +87,75 @@ public class Crocon {
         CCharPointer base64Input
     ) {
         return ConversionService.processConversion(
+            "block_entity",
             base64Input,
             BlockEntityConverter::convert
         );
     }
 
+    /**
+     * Convert a batch of independent items in one call, in parallel for
+     * large batches.
+     */
+    @CEntryPoint(name = "convert_batch")
+    public static CCharPointer convertBatch(
+        IsolateThread thread,
+        CCharPointer base64Input
+    ) {
+        return ConversionService.processConversion(
+            "batch",
+            base64Input,
+            BatchConverter::convert
+        );
+    }
+
+    /**
+     * Convert a whole .mcstructure or .schem structure between editions,
+     * including its palette, block entities and entities.
+     */
+    @CEntryPoint(name = "convert_structure")
+    public static CCharPointer convertStructure(
+        IsolateThread thread,
+        CCharPointer base64Input
+    ) {
+        return ConversionService.processConversion(
+            "structure",
+            base64Input,
+            StructureConverter::convert
+        );
+    }
+
+    /**
+     * Report isolate heap usage and the approximate footprint of each cached
+     * version pair.
+     */
+    @CEntryPoint(name = "memory_stats")
+    public static CCharPointer memoryStats(IsolateThread thread) {
+        return ConversionService.processQuery(CacheManager::memoryStats);
+    }
+
+    /**
+     * Set the number of threads used for parallel multi-item conversions in
+     * this isolate. Has no effect once the first parallel conversion ran.
+     */
+    @CEntryPoint(name = "set_parallelism")
+    public static void setParallelism(IsolateThread thread, int threads) {
+        ParallelExecutor.setParallelism(threads);
+    }
+
+    /**
+     * Flush diagnostics that would otherwise be written by a shutdown hook,
+     * such as the CROCON_JFR_FILE recording, and stop the isolate's
+     * background threads, which tear-down would otherwise wait for. Hosts
+     * call this before tearing down the isolate.
+     */
+    @CEntryPoint(name = "prepare_tear_down")
+    public static void prepareTearDown(IsolateThread thread) {
+        ConversionTrace.stopRecording();
+        CacheManager.shutdown();
+        ParallelExecutor.shutdown();
+    }
+
     /**
      * Free memory allocated by the conversion functions.
      * MUST be called by the caller to free memory returned by convert_* functions.
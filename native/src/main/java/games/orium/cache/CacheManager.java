@@ -1,12 +1,36 @@
 package games.orium.cache;
 
+import com.hivemc.chunker.nbt.tags.collection.CompoundTag;
+import games.orium.util.Config;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public class CacheManager {
 
-    private static final Map<String, ResolverCache> VERSION_CACHE =
-        new ConcurrentHashMap<>();
+    private static final Map<
+        String,
+        CompletableFuture<ResolverCache>
+    > VERSION_CACHE = new ConcurrentHashMap<>();
+
+    // Resolver construction recurses deeply, so it runs on dedicated threads
+    // with the same stack size as the isolate instead of a shared pool
+    private static final ExecutorService BUILD_EXECUTOR =
+        Executors.newCachedThreadPool(
+            Thread.ofPlatform()
+                .name("crocon-resolver-", 0)
+                .stackSize(Config.RESOLVER_STACK_SIZE)
+                .daemon(true)
+                .factory()
+        );
+
+    private static final Object MEASURE_LOCK = new Object();
 
     private CacheManager() {
         // Private constructor to prevent instantiation
@@ -22,7 +46,9 @@ public class CacheManager {
                 );
             caffeineLogger.setLevel(java.util.logging.Level.SEVERE);
 
-            getOrCreateCache("1.21.10", "1.21.120");
+            // Not joined: the build thread calls back into this class, so
+            // waiting here would block on this class's own initialization
+            warm("1.21.10", "1.21.120");
         } catch (Exception e) {
             e.printStackTrace(System.err);
         }
@@ -30,18 +56,185 @@ public class CacheManager {
 
     /**
      * Get or create a resolver cache for the given version pair.
+     * <p>
+     * A cold pair is built in the background, so only callers that need that
+     * pair wait for it. In async warmup mode they wait at most the configured
+     * time and then get a {@link CacheWarmingException} instead.
      *
      * @param javaVersion   The Java edition version string.
      * @param bedrockVersion The Bedrock edition version string.
      * @return The cached or newly created ResolverCache.
+     * @throws CacheWarmingException If async warmup is enabled and the pair
+     * is not ready in time.
      */
     public static ResolverCache getOrCreateCache(
         String javaVersion,
         String bedrockVersion
     ) {
-        String cacheKey = javaVersion + ":" + bedrockVersion;
-        return VERSION_CACHE.computeIfAbsent(cacheKey, _ ->
-            new ResolverCache(javaVersion, bedrockVersion)
+        CompletableFuture<ResolverCache> future = warm(
+            javaVersion,
+            bedrockVersion
         );
+        if (future.isDone() || !Config.ASYNC_WARMUP) {
+            return join(future);
+        }
+
+        try {
+            return future.get(Config.WARMUP_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new CacheWarmingException(javaVersion + ":" + bedrockVersion);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CacheWarmingException(javaVersion + ":" + bedrockVersion);
+        } catch (ExecutionException e) {
+            return join(future);
+        }
+    }
+
+    /**
+     * Start building the resolver cache for a version pair if it is not
+     * cached or already being built.
+     *
+     * @return A future completed with the cache once it is built.
+     */
+    public static CompletableFuture<ResolverCache> warm(
+        String javaVersion,
+        String bedrockVersion
+    ) {
+        String cacheKey = javaVersion + ":" + bedrockVersion;
+        CompletableFuture<ResolverCache> existing = VERSION_CACHE.get(cacheKey);
+        if (existing != null) {
+            return existing;
+        }
+
+        // Only the placeholder is created under the map's bin lock, the
+        // expensive construction happens on a build thread afterwards
+        CompletableFuture<ResolverCache> created = new CompletableFuture<>();
+        existing = VERSION_CACHE.putIfAbsent(cacheKey, created);
+        if (existing != null) {
+            return existing;
+        }
+
+        BUILD_EXECUTOR.execute(() -> {
+            try {
+                created.complete(buildMeasured(javaVersion, bedrockVersion));
+            } catch (Throwable t) {
+                // Forget failed builds so a later request can retry
+                VERSION_CACHE.remove(cacheKey, created);
+                created.completeExceptionally(t);
+            }
+        });
+        return created;
+    }
+
+    /**
+     * Stop the resolver build threads, interrupting any build in progress.
+     * Idle build threads otherwise linger for their keep-alive, and isolate
+     * tear-down waits for every thread of the isolate.
+     */
+    public static void shutdown() {
+        BUILD_EXECUTOR.shutdownNow();
+    }
+
+    private static ResolverCache join(CompletableFuture<ResolverCache> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Build a resolver cache and record its build time and, if enabled, its
+     * approximate heap footprint.
+     * The heap is collected before and after construction so the delta only
+     * reflects what the new cache keeps reachable; concurrent allocations on
+     * other threads make this an estimate rather than an exact figure. The
+     * collections pause every request in the isolate, so they only run when
+     * {@link Config#MEASURE_FOOTPRINT} is set, and then one build at a time.
+     */
+    private static ResolverCache buildMeasured(
+        String javaVersion,
+        String bedrockVersion
+    ) {
+        if (!Config.MEASURE_FOOTPRINT) {
+            long start = System.nanoTime();
+            ResolverCache cache = new ResolverCache(
+                javaVersion,
+                bedrockVersion,
+                BUILD_EXECUTOR
+            );
+            cache.recordFootprint(-1, System.nanoTime() - start);
+            return cache;
+        }
+
+        // Measured builds run one at a time, so that each heap delta only
+        // covers its own pair
+        synchronized (MEASURE_LOCK) {
+            long usedBefore = usedHeap(true);
+            long start = System.nanoTime();
+            ResolverCache cache = new ResolverCache(
+                javaVersion,
+                bedrockVersion,
+                BUILD_EXECUTOR
+            );
+            long buildNanos = System.nanoTime() - start;
+            long usedAfter = usedHeap(true);
+            cache.recordFootprint(
+                Math.max(0, usedAfter - usedBefore),
+                buildNanos
+            );
+            return cache;
+        }
+    }
+
+    private static long usedHeap(boolean collect) {
+        Runtime runtime = Runtime.getRuntime();
+        if (collect) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Snapshot the isolate heap usage and the footprint of every cached
+     * version pair.
+     *
+     * @return A compound with heap figures and a {@code caches} compound keyed
+     * by version pair.
+     */
+    public static CompoundTag memoryStats() {
+        Runtime runtime = Runtime.getRuntime();
+        CompoundTag stats = new CompoundTag();
+        stats.put("heapUsed", runtime.totalMemory() - runtime.freeMemory());
+        stats.put("heapCommitted", runtime.totalMemory());
+        stats.put("heapMax", runtime.maxMemory());
+
+        CompoundTag caches = new CompoundTag();
+        long totalRetained = 0;
+        int warming = 0;
+        for (Map.Entry<String, CompletableFuture<ResolverCache>> entry : VERSION_CACHE.entrySet()) {
+            CompletableFuture<ResolverCache> future = entry.getValue();
+            if (!future.isDone() || future.isCompletedExceptionally()) {
+                warming++;
+                continue;
+            }
+            ResolverCache cache = future.join();
+            CompoundTag cacheStats = new CompoundTag();
+            cacheStats.put("javaVersion", cache.javaVersion);
+            cacheStats.put("bedrockVersion", cache.bedrockVersion);
+            cacheStats.put("retainedBytes", cache.getRetainedBytes());
+            cacheStats.put("buildNanos", cache.getBuildNanos());
+            cacheStats.put("cachedBlocks", cache.blockResults.size());
+            caches.put(entry.getKey(), cacheStats);
+            totalRetained += Math.max(0, cache.getRetainedBytes());
+        }
+        stats.put("cachesRetainedBytes", totalRetained);
+        stats.put("cachesWarming", warming);
+        stats.put("caches", caches);
+        return stats;
     }
 }
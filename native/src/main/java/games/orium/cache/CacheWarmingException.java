@@ -0,0 +1,12 @@
+package games.orium.cache;
+
+/**
+ * Thrown when a request needs a version pair whose resolvers are still being
+ * built in the background. The request can be retried once warming finishes.
+ */
+public class CacheWarmingException extends IllegalStateException {
+
+    public CacheWarmingException(String versionPair) {
+        super("Resolvers for " + versionPair + " are still warming up");
+    }
+}
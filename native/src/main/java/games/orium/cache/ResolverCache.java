@@ -14,15 +14,35 @@ import com.hivemc.chunker.conversion.encoding.java.base.resolver.itemstack.JavaI
 import com.hivemc.chunker.conversion.intermediate.level.ChunkerLevel;
 import com.hivemc.chunker.conversion.intermediate.level.map.ChunkerMap;
 import com.hivemc.chunker.conversion.intermediate.world.Dimension;
+import com.hivemc.chunker.mapping.identifier.Identifier;
+import games.orium.util.Edition;
+import games.orium.util.LruCache;
 import games.orium.util.MockConverter;
 import games.orium.util.VersionUtil;
 import java.io.Closeable;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 public class ResolverCache implements Closeable {
 
-    public final WorldConverter converter;
+    private static final int MAX_CACHED_BLOCKS = 16384;
+
+    public final String javaVersion;
+    public final String bedrockVersion;
+    /**
+     * Output identifiers of recently converted blocks, so repeated block
+     * states skip the resolvers and their intermediate allocations.
+     * The identifiers are shared and must not be modified.
+     */
+    public final LruCache<BlockKey, Identifier> blockResults = new LruCache<>(
+        MAX_CACHED_BLOCKS
+    );
+    public final WorldConverter javaConverter;
+    public final WorldConverter bedrockConverter;
     public final JavaResolvers javaResolvers;
     public final BedrockResolvers bedrockResolvers;
     public final JavaNamedBiomeResolver javaBiomeResolver;
@@ -30,13 +50,106 @@ public class ResolverCache implements Closeable {
     public final JavaItemStackResolver javaItemStackResolver;
     public final BedrockItemStackResolver bedrockItemStackResolver;
 
+    /**
+     * A block conversion request. States hold the boxed NBT values, so
+     * states that differ only in their tag type are distinct keys.
+     */
+    public record BlockKey(
+        Edition fromEdition,
+        Edition toEdition,
+        String id,
+        Map<String, Object> states
+    ) {}
+
+    private volatile long retainedBytes = -1;
+    private volatile long buildNanos = -1;
+
     public ResolverCache(String javaVersion, String bedrockVersion) {
+        this(javaVersion, bedrockVersion, Runnable::run);
+    }
+
+    /**
+     * Build the resolvers for a version pair. The Java, Bedrock and biome
+     * resolvers do not depend on each other, so they are built concurrently
+     * on the given executor. The Java and Bedrock resolvers each get their
+     * own converter, since a WorldConverter is not safe to build with from
+     * two threads at once.
+     *
+     * @param javaVersion    The Java edition version string.
+     * @param bedrockVersion The Bedrock edition version string.
+     * @param executor       The executor to build independent parts on.
+     */
+    public ResolverCache(
+        String javaVersion,
+        String bedrockVersion,
+        Executor executor
+    ) {
+        this.javaVersion = javaVersion;
+        this.bedrockVersion = bedrockVersion;
+
         JavaDataVersion javaVer = VersionUtil.parseJavaVersion(javaVersion);
         BedrockDataVersion bedrockVer = VersionUtil.parseBedrockVersion(
             bedrockVersion
         );
 
-        this.converter = new MockConverter(
+        this.javaConverter = mockConverter();
+        this.bedrockConverter = mockConverter();
+
+        CompletableFuture<JavaResolvers> javaResolversFuture =
+            CompletableFuture.supplyAsync(
+                () ->
+                    JavaEncoders.getNearestEncoder(javaVer)
+                        .writerConstructor()
+                        .construct(null, javaVer.getVersion(), javaConverter)
+                        .buildResolvers(javaConverter)
+                        .build(),
+                executor
+            );
+        CompletableFuture<BedrockResolvers> bedrockResolversFuture =
+            CompletableFuture.supplyAsync(
+                () ->
+                    BedrockEncoders.getNearestEncoder(bedrockVer)
+                        .writerConstructor()
+                        .construct(
+                            null,
+                            bedrockVer.getVersion(),
+                            bedrockConverter
+                        )
+                        .buildResolvers(bedrockConverter)
+                        .build(),
+                executor
+            );
+        CompletableFuture<JavaNamedBiomeResolver> javaBiomeFuture =
+            CompletableFuture.supplyAsync(
+                () -> new JavaNamedBiomeResolver(javaVer.getVersion(), false),
+                executor
+            );
+        CompletableFuture<BedrockBiomeIDResolver> bedrockBiomeFuture =
+            CompletableFuture.supplyAsync(
+                () -> new BedrockBiomeIDResolver(bedrockVer.getVersion()),
+                executor
+            );
+        CompletableFuture<JavaItemStackResolver> javaItemStackFuture =
+            javaResolversFuture.thenApplyAsync(
+                JavaItemStackResolver::new,
+                executor
+            );
+        CompletableFuture<BedrockItemStackResolver> bedrockItemStackFuture =
+            bedrockResolversFuture.thenApplyAsync(
+                BedrockItemStackResolver::new,
+                executor
+            );
+
+        this.javaResolvers = join(javaResolversFuture);
+        this.bedrockResolvers = join(bedrockResolversFuture);
+        this.javaBiomeResolver = join(javaBiomeFuture);
+        this.bedrockBiomeResolver = join(bedrockBiomeFuture);
+        this.javaItemStackResolver = join(javaItemStackFuture);
+        this.bedrockItemStackResolver = join(bedrockItemStackFuture);
+    }
+
+    private static MockConverter mockConverter() {
+        return new MockConverter(
             new ChunkerLevel(
                 null,
                 null,
@@ -60,31 +173,41 @@ public class ResolverCache implements Closeable {
                 Collections.emptyList()
             )
         );
+    }
 
-        this.javaResolvers = JavaEncoders.getNearestEncoder(javaVer)
-            .writerConstructor()
-            .construct(null, javaVer.getVersion(), converter)
-            .buildResolvers(converter)
-            .build();
-
-        this.bedrockResolvers = BedrockEncoders.getNearestEncoder(bedrockVer)
-            .writerConstructor()
-            .construct(null, bedrockVer.getVersion(), converter)
-            .buildResolvers(converter)
-            .build();
-
-        this.javaBiomeResolver = new JavaNamedBiomeResolver(
-            javaVer.getVersion(),
-            false
-        );
-        this.bedrockBiomeResolver = new BedrockBiomeIDResolver(
-            bedrockVer.getVersion()
-        );
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
 
-        this.javaItemStackResolver = new JavaItemStackResolver(javaResolvers);
-        this.bedrockItemStackResolver = new BedrockItemStackResolver(
-            bedrockResolvers
-        );
+    /**
+     * Approximate number of heap bytes retained by this cache, measured as the
+     * used heap delta across construction, or -1 if not measured.
+     */
+    public long getRetainedBytes() {
+        return retainedBytes;
+    }
+
+    /**
+     * Wall-clock time spent constructing this cache in nanoseconds, or -1 if
+     * not measured.
+     */
+    public long getBuildNanos() {
+        return buildNanos;
+    }
+
+    void recordFootprint(long retainedBytes, long buildNanos) {
+        this.retainedBytes = retainedBytes;
+        this.buildNanos = buildNanos;
     }
 
     @Override
@@ -0,0 +1,215 @@
+package games.orium.conversion;
+
+import com.hivemc.chunker.nbt.TagType;
+import com.hivemc.chunker.nbt.tags.Tag;
+import com.hivemc.chunker.nbt.tags.array.ByteArrayTag;
+import com.hivemc.chunker.nbt.tags.collection.CompoundTag;
+import com.hivemc.chunker.nbt.tags.collection.ListTag;
+import games.orium.cache.CacheManager;
+import games.orium.cache.CacheWarmingException;
+import games.orium.cache.ResolverCache;
+import games.orium.conversion.ConversionService.ConversionFunction;
+import games.orium.util.Edition;
+import games.orium.util.NbtEncoding;
+import games.orium.util.ParallelExecutor;
+import games.orium.util.ParallelExecutor.Outcome;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts many independent items in one call.
+ * <p>
+ * The input compound holds a {@code requests} list. Each request names its
+ * {@code type} (block, item, biome, entity or block_entity) and its
+ * {@code data}, and may override the envelope's version pair and editions.
+ * Like the envelope, a request may send its data as raw bytes with an
+ * {@code inputEncoding} and ask for an {@code outputEncoding}.
+ * Requests are converted in parallel when the batch is large enough or when
+ * {@code parallel} is set, and each one gets its own success or error entry
+ * in the {@code results} list, in request order.
+ */
+public class BatchConverter {
+
+    private static final Map<String, ConversionFunction> CONVERTERS = Map.of(
+        "block",
+        BlockConverter::convert,
+        "item",
+        ItemConverter::convert,
+        "biome",
+        BiomeConverter::convert,
+        "entity",
+        EntityConverter::convert,
+        "block_entity",
+        BlockEntityConverter::convert
+    );
+
+    /** The resolvers of a per-request version pair, or why they failed. */
+    private record PairCache(ResolverCache cache, RuntimeException error) {}
+
+    private BatchConverter() {
+        // Private constructor to prevent instantiation
+    }
+
+    public static CompoundTag convert(
+        ResolverCache cache,
+        Edition fromEdition,
+        Edition toEdition,
+        CompoundTag data
+    ) {
+        List<CompoundTag> requests = new ArrayList<>();
+        if (data.get("requests") instanceof ListTag<?, ?> list) {
+            for (Tag<?> element : list) {
+                if (!(element instanceof CompoundTag request)) {
+                    throw new IllegalArgumentException(
+                        "Batch requests must be compounds"
+                    );
+                }
+                requests.add(request);
+            }
+        } else {
+            throw new IllegalArgumentException(
+                "Missing 'requests' list in batch data"
+            );
+        }
+
+        boolean parallel = data.contains("parallel")
+            ? data.getByte("parallel") != 0
+            : ParallelExecutor.shouldParallelize(requests.size());
+
+        Map<String, PairCache> pairCaches = resolvePairs(cache, requests);
+        List<Outcome<Tag<?>>> outcomes = ParallelExecutor.map(
+            requests,
+            parallel,
+            request ->
+                convertOne(cache, pairCaches, fromEdition, toEdition, request)
+        );
+
+        List<CompoundTag> results = new ArrayList<>(outcomes.size());
+        for (Outcome<Tag<?>> outcome : outcomes) {
+            CompoundTag result = new CompoundTag();
+            if (outcome.isSuccess()) {
+                result.put("success", (byte) 1);
+                result.put("data", outcome.value());
+            } else if (outcome.error() instanceof CacheWarmingException) {
+                result.put("success", (byte) 0);
+                result.put("error", outcome.error().getMessage());
+                result.put("warming", (byte) 1);
+            } else {
+                result.put("success", (byte) 0);
+                result.put("error", outcome.error().getMessage());
+                result.put(
+                    "stackTrace",
+                    ConversionService.getStackTrace(outcome.error())
+                );
+            }
+            results.add(result);
+        }
+
+        CompoundTag output = new CompoundTag();
+        output.put("results", new ListTag<>(TagType.COMPOUND, results));
+        return output;
+    }
+
+    /**
+     * Resolve the version pairs that requests override on the calling thread.
+     * Waiting for a cold pair on a pool worker could leave the pool without a
+     * runnable thread. Every cold pair is started before any is waited for.
+     */
+    private static Map<String, PairCache> resolvePairs(
+        ResolverCache cache,
+        List<CompoundTag> requests
+    ) {
+        Map<String, String[]> pairs = new HashMap<>();
+        for (CompoundTag request : requests) {
+            if (
+                request.contains("fromVersion") ||
+                request.contains("toVersion")
+            ) {
+                String[] pair = versionPair(cache, request);
+                if (pairs.putIfAbsent(pair[0] + ":" + pair[1], pair) == null) {
+                    CacheManager.warm(pair[0], pair[1]);
+                }
+            }
+        }
+
+        Map<String, PairCache> pairCaches = new HashMap<>();
+        for (Map.Entry<String, String[]> entry : pairs.entrySet()) {
+            String[] pair = entry.getValue();
+            PairCache resolved;
+            try {
+                resolved = new PairCache(
+                    CacheManager.getOrCreateCache(pair[0], pair[1]),
+                    null
+                );
+            } catch (RuntimeException e) {
+                resolved = new PairCache(null, e);
+            }
+            pairCaches.put(entry.getKey(), resolved);
+        }
+        return pairCaches;
+    }
+
+    private static String[] versionPair(
+        ResolverCache cache,
+        CompoundTag request
+    ) {
+        return new String[] {
+            request.getString("fromVersion", cache.javaVersion),
+            request.getString("toVersion", cache.bedrockVersion),
+        };
+    }
+
+    private static Tag<?> convertOne(
+        ResolverCache cache,
+        Map<String, PairCache> pairCaches,
+        Edition fromEdition,
+        Edition toEdition,
+        CompoundTag request
+    ) throws Exception {
+        String type = request.getString("type", "");
+        ConversionFunction converter = CONVERTERS.get(type);
+        if (converter == null) {
+            throw new IllegalArgumentException(
+                "Unsupported batch request type: " + type
+            );
+        }
+
+        CompoundTag data = ConversionService.readData(request);
+        if (data == null) {
+            throw new IllegalArgumentException(
+                "Missing 'data' field in batch request"
+            );
+        }
+
+        if (request.contains("fromVersion") || request.contains("toVersion")) {
+            String[] pair = versionPair(cache, request);
+            PairCache resolved = pairCaches.get(pair[0] + ":" + pair[1]);
+            if (resolved.error() != null) {
+                throw resolved.error();
+            }
+            cache = resolved.cache();
+        }
+        if (request.contains("fromEdition")) {
+            fromEdition = Edition.fromString(request.getString("fromEdition"));
+        }
+        if (request.contains("toEdition")) {
+            toEdition = Edition.fromString(request.getString("toEdition"));
+        }
+
+        CompoundTag converted = converter.convert(
+            cache,
+            fromEdition,
+            toEdition,
+            data
+        );
+        if (request.contains("outputEncoding")) {
+            NbtEncoding outputEncoding = NbtEncoding.fromString(
+                request.getString("outputEncoding")
+            );
+            return new ByteArrayTag(outputEncoding.write(converted));
+        }
+        return converted;
+    }
+}
@@ -6,6 +6,7 @@ import com.hivemc.chunker.mapping.identifier.states.StateValue;
 import com.hivemc.chunker.nbt.tags.Tag;
 import com.hivemc.chunker.nbt.tags.collection.CompoundTag;
 import games.orium.cache.ResolverCache;
+import games.orium.cache.ResolverCache.BlockKey;
 import games.orium.util.Edition;
 import java.util.HashMap;
 import java.util.Map;
@@ -26,16 +27,50 @@ public class BlockConverter {
         String blockId = data.getString("id");
         CompoundTag states = data.getCompound("states");
 
-        Map<String, StateValue<?>> statesMap = new HashMap<>();
+        Map<String, Object> boxedStates = new HashMap<>();
         if (states != null) {
             for (Map.Entry<String, Tag<?>> entry : states) {
-                StateValue<?> stateValue = StateValue.fromBoxed(
+                boxedStates.put(
+                    entry.getKey(),
                     entry.getValue().getBoxedValue()
                 );
-                statesMap.put(entry.getKey(), stateValue);
             }
         }
 
+        BlockKey key = new BlockKey(
+            fromEdition,
+            toEdition,
+            blockId,
+            boxedStates
+        );
+        Identifier cached = cache.blockResults.get(key);
+        if (cached != null) {
+            return toTag(cached);
+        }
+
+        Identifier id = resolve(
+            cache,
+            fromEdition,
+            toEdition,
+            blockId,
+            boxedStates
+        );
+        cache.blockResults.put(key, id);
+        return toTag(id);
+    }
+
+    private static Identifier resolve(
+        ResolverCache cache,
+        Edition fromEdition,
+        Edition toEdition,
+        String blockId,
+        Map<String, Object> boxedStates
+    ) {
+        Map<String, StateValue<?>> statesMap = new HashMap<>();
+        boxedStates.forEach((key, value) ->
+            statesMap.put(key, StateValue.fromBoxed(value))
+        );
+
         Identifier inputIdentifier = new Identifier(blockId, statesMap);
         ChunkerBlockIdentifier chunkerBlock;
 
@@ -81,20 +116,7 @@ public class BlockConverter {
         }
 
         if (outputId.isPresent()) {
-            CompoundTag result = new CompoundTag();
-            Identifier id = outputId.get();
-            result.put("id", id.getIdentifier());
-
-            if (!id.getStates().isEmpty()) {
-                CompoundTag outputStates = new CompoundTag();
-                id
-                    .getStates()
-                    .forEach((key, stateValue) ->
-                        outputStates.put(key, stateValue.toNBT())
-                    );
-                result.put("states", outputStates);
-            }
-            return result;
+            return outputId.get();
         } else {
             throw new IllegalArgumentException(
                 "Failed to convert block from " +
@@ -106,4 +128,24 @@ public class BlockConverter {
             );
         }
     }
+
+    /**
+     * Build the result for an output identifier. A new tag is built every
+     * time, since results may be modified by their callers.
+     */
+    private static CompoundTag toTag(Identifier id) {
+        CompoundTag result = new CompoundTag();
+        result.put("id", id.getIdentifier());
+
+        if (!id.getStates().isEmpty()) {
+            CompoundTag outputStates = new CompoundTag();
+            id
+                .getStates()
+                .forEach((key, stateValue) ->
+                    outputStates.put(key, stateValue.toNBT())
+                );
+            result.put("states", outputStates);
+        }
+        return result;
+    }
 }
@@ -22,33 +22,11 @@ public class BlockEntityConverter {
         Edition toEdition,
         CompoundTag data
     ) {
-        Optional<BlockEntity> blockEntity;
-        if (fromEdition == Edition.JAVA) {
-            blockEntity = cache.javaResolvers.blockEntityResolver().to(data);
-            if (blockEntity.isEmpty()) {
-                String identifier = data
-                    .getOptionalValue("id", String.class)
-                    .orElse("unknown");
-                throw new IllegalArgumentException(
-                    "Failed to parse Java block entity NBT. ID: " + identifier
-                );
-            }
-        } else if (fromEdition == Edition.BEDROCK) {
-            blockEntity = cache.bedrockResolvers.blockEntityResolver().to(data);
-            if (blockEntity.isEmpty()) {
-                String identifier = data
-                    .getOptionalValue("id", String.class)
-                    .orElse("unknown");
-                throw new IllegalArgumentException(
-                    "Failed to parse Bedrock block entity NBT. ID: " +
-                        identifier
-                );
-            }
-        } else {
-            throw new UnsupportedOperationException(
-                "Unsupported 'from' edition: " + fromEdition
-            );
-        }
+        Optional<BlockEntity> blockEntity = readBlockEntity(
+            cache,
+            fromEdition,
+            data
+        );
 
         ChunkerVanillaBlockType blockType = getBlockTypeFromEntity(
             blockEntity.get()
@@ -91,6 +69,79 @@ public class BlockEntityConverter {
         return outputNbt.get();
     }
 
+    /**
+     * Convert the NBT of a block entity placed in the world, as found in
+     * chunks and structure files, without wrapping it in an item stack.
+     */
+    public static CompoundTag convertPlaced(
+        ResolverCache cache,
+        Edition fromEdition,
+        Edition toEdition,
+        CompoundTag data
+    ) {
+        BlockEntity blockEntity = readBlockEntity(
+            cache,
+            fromEdition,
+            data
+        ).get();
+
+        Optional<CompoundTag> outputNbt;
+        if (toEdition == Edition.JAVA) {
+            outputNbt = cache.javaResolvers.blockEntityResolver().from(
+                blockEntity
+            );
+        } else if (toEdition == Edition.BEDROCK) {
+            outputNbt = cache.bedrockResolvers.blockEntityResolver().from(
+                blockEntity
+            );
+        } else {
+            throw new UnsupportedOperationException(
+                "Unsupported 'to' edition: " + toEdition
+            );
+        }
+
+        return outputNbt.orElseThrow(() ->
+            new IllegalStateException(
+                "Failed to convert block entity to " + toEdition + " format"
+            )
+        );
+    }
+
+    private static Optional<BlockEntity> readBlockEntity(
+        ResolverCache cache,
+        Edition fromEdition,
+        CompoundTag data
+    ) {
+        Optional<BlockEntity> blockEntity;
+        if (fromEdition == Edition.JAVA) {
+            blockEntity = cache.javaResolvers.blockEntityResolver().to(data);
+            if (blockEntity.isEmpty()) {
+                String identifier = data
+                    .getOptionalValue("id", String.class)
+                    .orElse("unknown");
+                throw new IllegalArgumentException(
+                    "Failed to parse Java block entity NBT. ID: " + identifier
+                );
+            }
+        } else if (fromEdition == Edition.BEDROCK) {
+            blockEntity = cache.bedrockResolvers.blockEntityResolver().to(data);
+            if (blockEntity.isEmpty()) {
+                String identifier = data
+                    .getOptionalValue("id", String.class)
+                    .orElse("unknown");
+                throw new IllegalArgumentException(
+                    "Failed to parse Bedrock block entity NBT. ID: " +
+                        identifier
+                );
+            }
+        } else {
+            throw new UnsupportedOperationException(
+                "Unsupported 'from' edition: " + fromEdition
+            );
+        }
+        return blockEntity;
+    }
+
     private static ChunkerVanillaBlockType getBlockTypeFromEntity(
         BlockEntity entity
     ) {
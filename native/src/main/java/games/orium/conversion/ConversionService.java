@@ -1,10 +1,15 @@
 package games.orium.conversion;
 
 import com.hivemc.chunker.nbt.tags.Tag;
+import com.hivemc.chunker.nbt.tags.array.ByteArrayTag;
 import com.hivemc.chunker.nbt.tags.collection.CompoundTag;
 import games.orium.cache.CacheManager;
+import games.orium.cache.CacheWarmingException;
 import games.orium.cache.ResolverCache;
+import games.orium.trace.ConversionTrace;
+import games.orium.trace.ConversionTrace.Phase;
 import games.orium.util.Edition;
+import games.orium.util.NbtEncoding;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
@@ -27,15 +32,38 @@ public class ConversionService {
         ) throws Exception;
     }
 
+    @FunctionalInterface
+    public interface QueryFunction {
+        CompoundTag query() throws Exception;
+    }
+
+    /**
+     * Decode a request envelope, run the conversion and encode the response.
+     * <p>
+     * The envelope itself is always little-endian. Its 'data' is either a
+     * compound, or a byte array in the encoding named by 'inputEncoding'.
+     * When 'outputEncoding' is set the converted data is returned as a byte
+     * array in that encoding instead of a nested compound.
+     *
+     * @param type            The kind of input, used for tracing and logging.
+     * @param base64Input     The Base64-encoded Bedrock NBT request envelope.
+     * @param conversionLogic The converter to apply to the 'data' compound.
+     * @return A newly allocated Base64-encoded response envelope.
+     */
     public static CCharPointer processConversion(
+        String type,
         CCharPointer base64Input,
         ConversionFunction conversionLogic
     ) {
-        String inputStr = CTypeConversion.toJavaString(base64Input);
+        ConversionTrace trace = ConversionTrace.begin(type);
         CompoundTag resultNbt = new CompoundTag();
+        boolean traceRequested = false;
 
         try {
+            String inputStr = CTypeConversion.toJavaString(base64Input);
             byte[] nbtBytes = Base64.getDecoder().decode(inputStr);
+            trace.mark(Phase.DECODE);
+
             CompoundTag inputNbt = Tag.readBedrockNBT(nbtBytes);
 
             assert inputNbt != null;
@@ -43,7 +71,18 @@ public class ConversionService {
             String toVersion = inputNbt.getString("toVersion", "1.20.80");
             String fromEditionStr = inputNbt.getString("fromEdition", "java");
             String toEditionStr = inputNbt.getString("toEdition", "bedrock");
-            CompoundTag dataToConvert = inputNbt.getCompound("data");
+            NbtEncoding outputEncoding = inputNbt.contains("outputEncoding")
+                ? NbtEncoding.fromString(inputNbt.getString("outputEncoding"))
+                : null;
+            CompoundTag dataToConvert = readData(inputNbt);
+            trace.mark(Phase.PARSE);
+            traceRequested = inputNbt.getByte("trace", (byte) 0) != 0;
+            trace.describe(
+                fromEditionStr,
+                toEditionStr,
+                fromVersion,
+                toVersion
+            );
 
             if (dataToConvert == null) {
                 throw new IllegalArgumentException(
@@ -58,15 +97,30 @@ public class ConversionService {
                 fromVersion,
                 toVersion
             );
+            trace.mark(Phase.CACHE);
+
             CompoundTag convertedData = conversionLogic.convert(
                 cache,
                 fromEdition,
                 toEdition,
                 dataToConvert
             );
+            trace.mark(Phase.CONVERT);
 
             resultNbt.put("success", (byte) 1);
-            resultNbt.put("data", convertedData);
+            if (outputEncoding != null) {
+                resultNbt.put(
+                    "data",
+                    new ByteArrayTag(outputEncoding.write(convertedData))
+                );
+            } else {
+                resultNbt.put("data", convertedData);
+            }
+            trace.setSuccess(true);
+        } catch (CacheWarmingException e) {
+            resultNbt.put("success", (byte) 0);
+            resultNbt.put("error", e.getMessage());
+            resultNbt.put("warming", (byte) 1);
         } catch (IOException e) {
             resultNbt.put("success", (byte) 0);
             resultNbt.put("error", "IO Error: " + e.getMessage());
@@ -77,12 +131,64 @@ public class ConversionService {
             resultNbt.put("stackTrace", getStackTrace(e));
         }
 
+        if (traceRequested) {
+            resultNbt.put("trace", trace.toNBT());
+        }
+
+        CCharPointer result = encodeResponse(resultNbt, trace);
+        trace.finish();
+        return result;
+    }
+
+    /**
+     * Read the 'data' of a request, decoding it first if it was sent as raw
+     * bytes in the encoding named by 'inputEncoding'.
+     */
+    static CompoundTag readData(CompoundTag inputNbt)
+        throws IOException {
+        if (inputNbt.get("data") instanceof ByteArrayTag rawData) {
+            NbtEncoding inputEncoding = NbtEncoding.fromString(
+                inputNbt.getString("inputEncoding", "little_endian")
+            );
+            return inputEncoding.read(rawData.getValue());
+        }
+        return inputNbt.getCompound("data");
+    }
+
+    /**
+     * Run a read-only query that takes no input and wrap its result in the
+     * standard response envelope.
+     */
+    public static CCharPointer processQuery(QueryFunction queryLogic) {
+        CompoundTag resultNbt = new CompoundTag();
+        try {
+            resultNbt.put("success", (byte) 1);
+            resultNbt.put("data", queryLogic.query());
+        } catch (Exception e) {
+            resultNbt.put("success", (byte) 0);
+            resultNbt.put("error", e.getMessage());
+            resultNbt.put("stackTrace", getStackTrace(e));
+        }
+        return encodeResponse(resultNbt, null);
+    }
+
+    private static CCharPointer encodeResponse(
+        CompoundTag resultNbt,
+        ConversionTrace trace
+    ) {
         try {
             byte[] outputBytes = Tag.writeBedrockNBT(resultNbt);
             String base64Output = Base64.getEncoder().encodeToString(
                 outputBytes
             );
-            return toCCharPointer(base64Output);
+            if (trace != null) {
+                trace.mark(Phase.SERIALIZE);
+            }
+            CCharPointer result = toCCharPointer(base64Output);
+            if (trace != null) {
+                trace.mark(Phase.COPY);
+            }
+            return result;
         } catch (IOException e) {
             try {
                 CompoundTag errorNbt = new CompoundTag();
@@ -108,7 +214,7 @@ public class ConversionService {
         }
     }
 
-    private static String getStackTrace(Exception e) {
+    static String getStackTrace(Throwable e) {
         StringWriter sw = new StringWriter();
         PrintWriter pw = new PrintWriter(sw);
         e.printStackTrace(pw);
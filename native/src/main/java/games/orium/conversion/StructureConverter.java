@@ -0,0 +1,1169 @@
+package games.orium.conversion;
+
+import com.hivemc.chunker.nbt.TagType;
+import com.hivemc.chunker.nbt.tags.Tag;
+import com.hivemc.chunker.nbt.tags.array.ByteArrayTag;
+import com.hivemc.chunker.nbt.tags.array.IntArrayTag;
+import com.hivemc.chunker.nbt.tags.collection.CompoundTag;
+import com.hivemc.chunker.nbt.tags.collection.ListTag;
+import com.hivemc.chunker.nbt.tags.primitive.DoubleTag;
+import com.hivemc.chunker.nbt.tags.primitive.FloatTag;
+import games.orium.cache.ResolverCache;
+import games.orium.util.Edition;
+import games.orium.util.NbtEncoding;
+import games.orium.util.ParallelExecutor;
+import games.orium.util.ParallelExecutor.Outcome;
+import games.orium.util.VersionUtil;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Converts whole structure files between editions in a single pass.
+ * <p>
+ * Bedrock structures are read and written as {@code .mcstructure} files and
+ * Java structures as Sponge {@code .schem} files (version 2 or 3 on input,
+ * version 3 on output). Palette entries go through {@link BlockConverter},
+ * block entities through {@link BlockEntityConverter} and entities through
+ * {@link EntityConverter}, in parallel for large structures. Entries that
+ * fail to convert are dropped (or replaced with air for palette entries) and
+ * reported in the result.
+ * <p>
+ * The input compound holds either a {@code path} string or a {@code payload}
+ * byte array. When an {@code outputPath} is given the result is written there,
+ * otherwise it is returned in the {@code payload} of the result.
+ */
+public class StructureConverter {
+
+    private static final String AIR = "minecraft:air";
+    private static final String STRUCTURE_VOID = "minecraft:structure_void";
+    private static final String WATER = "minecraft:water";
+    private static final String FLOWING_WATER = "minecraft:flowing_water";
+    private static final int SCHEMATIC_VERSION = 3;
+    private static final int MAX_REPORTED_ERRORS = 100;
+    // Two int layers per block have to fit in the isolate heap
+    private static final int MAX_BLOCKS = 1 << 25;
+    // Sponge schematics store each dimension as an unsigned short
+    private static final int MAX_SCHEMATIC_SIZE = 0xFFFF;
+
+    private StructureConverter() {
+        // Private constructor to prevent instantiation
+    }
+
+    public static CompoundTag convert(
+        ResolverCache cache,
+        Edition fromEdition,
+        Edition toEdition,
+        CompoundTag data
+    ) throws IOException {
+        byte[] input = readInput(data);
+
+        Structure structure;
+        if (fromEdition == Edition.BEDROCK) {
+            structure = readMcstructure(NbtEncoding.LITTLE_ENDIAN.read(input));
+        } else if (fromEdition == Edition.JAVA) {
+            structure = readSchematic(
+                NbtEncoding.BIG_ENDIAN.read(decompress(input))
+            );
+        } else {
+            throw new UnsupportedOperationException(
+                "Unsupported 'from' edition: " + fromEdition
+            );
+        }
+
+        Job job = new Job(cache, fromEdition, toEdition);
+        job.convert(structure);
+
+        byte[] output;
+        String format;
+        if (toEdition == Edition.BEDROCK) {
+            output = job.writeMcstructure(structure);
+            format = "mcstructure";
+        } else if (toEdition == Edition.JAVA) {
+            output = compress(
+                NbtEncoding.BIG_ENDIAN.write(job.writeSchematic(structure))
+            );
+            format = "schem";
+        } else {
+            throw new UnsupportedOperationException(
+                "Unsupported 'to' edition: " + toEdition
+            );
+        }
+
+        CompoundTag result = job.summary();
+        result.put("format", format);
+        String outputPath = data.getString("outputPath", "");
+        if (outputPath.isEmpty()) {
+            result.put("payload", new ByteArrayTag(output));
+        } else {
+            Files.write(Path.of(outputPath), output);
+            result.put("path", outputPath);
+        }
+        return result;
+    }
+
+    private static byte[] readInput(CompoundTag data) throws IOException {
+        String path = data.getString("path", "");
+        if (!path.isEmpty()) {
+            return Files.readAllBytes(Path.of(path));
+        }
+        if (data.get("payload") instanceof ByteArrayTag payload) {
+            return payload.getValue();
+        }
+        throw new IllegalArgumentException(
+            "Structure conversion requires a 'path' or 'payload' field"
+        );
+    }
+
+    private static byte[] decompress(byte[] input) throws IOException {
+        // Sponge schematics are normally gzipped but accept raw NBT as well
+        if (
+            input.length < 2 ||
+            (input[0] & 0xFF) != 0x1F ||
+            (input[1] & 0xFF) != 0x8B
+        ) {
+            return input;
+        }
+        try (
+            InputStream in = new GZIPInputStream(
+                new ByteArrayInputStream(input)
+            )
+        ) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static byte[] compress(byte[] input) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(input.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(input);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Edition-neutral view of a structure. Block indices use the
+     * {@code .mcstructure} order, with x outermost and z innermost, and -1
+     * marks a structure void. The optional secondary layer holds the
+     * {@code .mcstructure} second layer, which is used for water in
+     * waterlogged blocks, with -1 marking an empty entry.
+     */
+    private static class Structure {
+
+        final int sizeX;
+        final int sizeY;
+        final int sizeZ;
+        final List<CompoundTag> palette = new ArrayList<>();
+        final int[] blocks;
+        int[] secondary;
+        final Map<Integer, CompoundTag> blockEntities = new TreeMap<>();
+        final List<CompoundTag> entities = new ArrayList<>();
+
+        Structure(int sizeX, int sizeY, int sizeZ) {
+            this.sizeX = sizeX;
+            this.sizeY = sizeY;
+            this.sizeZ = sizeZ;
+            this.blocks = new int[volume(sizeX, sizeY, sizeZ)];
+        }
+
+        private static int volume(int sizeX, int sizeY, int sizeZ) {
+            String dimensions = sizeX + "x" + sizeY + "x" + sizeZ;
+            if (sizeX < 0 || sizeY < 0 || sizeZ < 0) {
+                throw new IllegalArgumentException(
+                    "Invalid structure size " + dimensions
+                );
+            }
+            try {
+                int volume = Math.multiplyExact(
+                    Math.multiplyExact(sizeX, sizeY),
+                    sizeZ
+                );
+                if (volume <= MAX_BLOCKS) {
+                    return volume;
+                }
+            } catch (ArithmeticException e) {
+                // Reported below as too large
+            }
+            throw new IllegalArgumentException(
+                "Structure size " +
+                    dimensions +
+                    " exceeds the limit of " +
+                    MAX_BLOCKS +
+                    " blocks"
+            );
+        }
+
+        boolean contains(int x, int y, int z) {
+            return (
+                x >= 0 &&
+                x < sizeX &&
+                y >= 0 &&
+                y < sizeY &&
+                z >= 0 &&
+                z < sizeZ
+            );
+        }
+
+        int index(int x, int y, int z) {
+            return (x * sizeY + y) * sizeZ + z;
+        }
+
+        int[] position(int index) {
+            return new int[] {
+                index / (sizeY * sizeZ),
+                (index / sizeZ) % sizeY,
+                index % sizeZ,
+            };
+        }
+    }
+
+    private static Structure readMcstructure(CompoundTag root) {
+        int[] size = readInts(root.get("size"));
+        if (size.length < 3) {
+            throw new IllegalArgumentException(
+                "Structure 'size' must have three components"
+            );
+        }
+        Structure structure = new Structure(size[0], size[1], size[2]);
+        int[] origin = root.contains("structure_world_origin")
+            ? readInts(root.get("structure_world_origin"))
+            : new int[3];
+        if (origin.length < 3) {
+            throw new IllegalArgumentException(
+                "Structure 'structure_world_origin' must have three components"
+            );
+        }
+
+        CompoundTag body = requireCompound(root, "structure");
+        CompoundTag palette = requireCompound(
+            requireCompound(body, "palette"),
+            "default"
+        );
+        for (CompoundTag entry : compounds(palette.get("block_palette"))) {
+            CompoundTag block = new CompoundTag();
+            block.put("id", entry.getString("name"));
+            CompoundTag states = entry.getCompound("states");
+            if (states != null) {
+                block.put("states", states);
+            }
+            structure.palette.add(block);
+        }
+
+        // The first layer holds the blocks, the second one the water of
+        // waterlogged blocks
+        List<int[]> layers = new ArrayList<>(2);
+        if (body.get("block_indices") instanceof ListTag<?, ?> list) {
+            for (Tag<?> layer : list) {
+                if (layers.size() == 2) {
+                    break;
+                }
+                int[] indices = readInts(layer);
+                if (indices.length != structure.blocks.length) {
+                    throw new IllegalArgumentException(
+                        "Structure layer has " +
+                            indices.length +
+                            " blocks, expected " +
+                            structure.blocks.length
+                    );
+                }
+                layers.add(indices);
+            }
+        }
+        if (layers.isEmpty()) {
+            throw new IllegalArgumentException(
+                "Missing 'block_indices' in structure"
+            );
+        }
+        System.arraycopy(
+            layers.get(0),
+            0,
+            structure.blocks,
+            0,
+            structure.blocks.length
+        );
+        if (layers.size() > 1) {
+            structure.secondary = layers.get(1);
+        }
+
+        CompoundTag positionData = palette.getCompound("block_position_data");
+        if (positionData != null) {
+            for (Map.Entry<String, Tag<?>> entry : positionData) {
+                if (
+                    entry.getValue() instanceof CompoundTag position &&
+                    position.getCompound("block_entity_data") != null
+                ) {
+                    structure.blockEntities.put(
+                        blockIndex(structure, entry.getKey()),
+                        position.getCompound("block_entity_data")
+                    );
+                }
+            }
+        }
+
+        for (CompoundTag entity : compounds(body.get("entities"))) {
+            offsetPosition(entity, -origin[0], -origin[1], -origin[2]);
+            structure.entities.add(entity);
+        }
+        return structure;
+    }
+
+    private static int blockIndex(Structure structure, String key) {
+        int index;
+        try {
+            index = Integer.parseInt(key);
+        } catch (NumberFormatException e) {
+            index = -1;
+        }
+        if (index < 0 || index >= structure.blocks.length) {
+            throw new IllegalArgumentException(
+                "Structure block entity is outside the structure: " + key
+            );
+        }
+        return index;
+    }
+
+    private static Structure readSchematic(CompoundTag root) {
+        CompoundTag schematic = root.getCompound("Schematic");
+        boolean version3 = schematic != null;
+        if (!version3) {
+            schematic = root;
+        }
+
+        Structure structure = new Structure(
+            readInt(schematic, "Width"),
+            readInt(schematic, "Height"),
+            readInt(schematic, "Length")
+        );
+
+        CompoundTag blocks = version3
+            ? requireCompound(schematic, "Blocks")
+            : schematic;
+        CompoundTag palette = requireCompound(blocks, "Palette");
+        // Palette ids index the block data, so they must be dense enough to
+        // fit a palette-sized remap table
+        Map<Integer, CompoundTag> paletteById = new TreeMap<>();
+        for (Map.Entry<String, Tag<?>> entry : palette) {
+            if (
+                !(entry.getValue().getBoxedValue() instanceof Number number) ||
+                number.intValue() < 0 ||
+                number.intValue() >= palette.size()
+            ) {
+                throw new IllegalArgumentException(
+                    "Schematic palette entry " +
+                        entry.getKey() +
+                        " has an id outside [0, " +
+                        palette.size() +
+                        ")"
+                );
+            }
+            paletteById.put(number.intValue(), parseBlockState(entry.getKey()));
+        }
+        int[] remap = new int[palette.size()];
+        Arrays.fill(remap, -1);
+        for (Map.Entry<Integer, CompoundTag> entry : paletteById.entrySet()) {
+            remap[entry.getKey()] = structure.palette.size();
+            structure.palette.add(entry.getValue());
+        }
+
+        String dataKey = version3 ? "Data" : "BlockData";
+        if (!(blocks.get(dataKey) instanceof ByteArrayTag blockData)) {
+            throw new IllegalArgumentException(
+                "Missing '" + dataKey + "' field in schematic"
+            );
+        }
+        byte[] varints = blockData.getValue();
+        int offset = 0;
+        for (int y = 0; y < structure.sizeY; y++) {
+            for (int z = 0; z < structure.sizeZ; z++) {
+                for (int x = 0; x < structure.sizeX; x++) {
+                    int value = 0;
+                    int shift = 0;
+                    byte current;
+                    do {
+                        if (offset >= varints.length || shift > 28) {
+                            throw new IllegalArgumentException(
+                                "Truncated or malformed '" +
+                                    dataKey +
+                                    "' in schematic"
+                            );
+                        }
+                        current = varints[offset++];
+                        value |= (current & 0x7F) << shift;
+                        shift += 7;
+                    } while ((current & 0x80) != 0);
+                    if (
+                        value < 0 ||
+                        value >= remap.length ||
+                        remap[value] < 0
+                    ) {
+                        throw new IllegalArgumentException(
+                            "Schematic block refers to unknown palette id " +
+                                value
+                        );
+                    }
+                    structure.blocks[structure.index(x, y, z)] = remap[value];
+                }
+            }
+        }
+
+        for (CompoundTag entry : compounds(blocks.get("BlockEntities"))) {
+            int[] pos = readInts(entry.get("Pos"));
+            if (pos.length < 3 || !structure.contains(pos[0], pos[1], pos[2])) {
+                throw new IllegalArgumentException(
+                    "Schematic block entity is outside the structure"
+                );
+            }
+            CompoundTag blockEntity = unwrapSchematicEntry(entry, version3);
+            blockEntity.put("x", pos[0]);
+            blockEntity.put("y", pos[1]);
+            blockEntity.put("z", pos[2]);
+            structure.blockEntities.put(
+                structure.index(pos[0], pos[1], pos[2]),
+                blockEntity
+            );
+        }
+
+        for (CompoundTag entry : compounds(schematic.get("Entities"))) {
+            CompoundTag entity = unwrapSchematicEntry(entry, version3);
+            entity.put("Pos", entry.get("Pos"));
+            structure.entities.add(entity);
+        }
+        return structure;
+    }
+
+    private static CompoundTag unwrapSchematicEntry(
+        CompoundTag entry,
+        boolean version3
+    ) {
+        CompoundTag unwrapped = new CompoundTag();
+        CompoundTag source = version3 ? entry.getCompound("Data") : entry;
+        if (source != null) {
+            for (Map.Entry<String, Tag<?>> field : source) {
+                String key = field.getKey();
+                if (!key.equals("Pos") && !key.equals("Id")) {
+                    unwrapped.put(field.getKey(), field.getValue());
+                }
+            }
+        }
+        unwrapped.put("id", entry.getString("Id"));
+        return unwrapped;
+    }
+
+    /**
+     * Conversion state for one structure, including the per-job caches that
+     * deduplicate palette conversions.
+     */
+    private static class Job {
+
+        private final ResolverCache cache;
+        private final Edition fromEdition;
+        private final Edition toEdition;
+        private final Map<String, CompoundTag> convertedBlocks =
+            new HashMap<>();
+        private final Map<String, Integer> outputPaletteIndex = new HashMap<>();
+        private final List<CompoundTag> outputPalette = new ArrayList<>();
+        private final Map<Integer, CompoundTag> outputBlockEntities =
+            new TreeMap<>();
+        private final List<CompoundTag> outputEntities = new ArrayList<>();
+        private final CompoundTag errors = new CompoundTag();
+        private int paletteFailures;
+        private int blockEntityFailures;
+        private int entityFailures;
+
+        Job(ResolverCache cache, Edition fromEdition, Edition toEdition) {
+            this.cache = cache;
+            this.fromEdition = fromEdition;
+            this.toEdition = toEdition;
+        }
+
+        void convert(Structure structure) {
+            int paletteSize = structure.palette.size();
+            int[] remap = new int[paletteSize];
+            boolean[] water = new boolean[paletteSize];
+            boolean[] waterlogged = new boolean[paletteSize];
+            for (int i = 0; i < paletteSize; i++) {
+                CompoundTag block = structure.palette.get(i);
+                if (
+                    fromEdition == Edition.JAVA &&
+                    toEdition == Edition.BEDROCK &&
+                    STRUCTURE_VOID.equals(block.getString("id"))
+                ) {
+                    // The reverse of writing Bedrock's empty cells as
+                    // structure voids
+                    remap[i] = -1;
+                    continue;
+                }
+                remap[i] = outputIndex(convertBlock(block));
+                water[i] = isWater(block);
+                waterlogged[i] = isWaterlogged(block);
+            }
+
+            // Waterlogging is a second layer of water on Bedrock and a block
+            // state on Java, so it is moved between the two here
+            int[] inputSecondary = structure.secondary;
+            int[] waterloggedRemap = null;
+            int waterIndex = -1;
+            if (toEdition == Edition.BEDROCK) {
+                structure.secondary = new int[structure.blocks.length];
+                Arrays.fill(structure.secondary, -1);
+            } else {
+                structure.secondary = null;
+            }
+
+            int voidIndex = -1;
+            for (int i = 0; i < structure.blocks.length; i++) {
+                int block = structure.blocks[i];
+                int below = inputSecondary != null ? inputSecondary[i] : -1;
+                if (block < 0) {
+                    if (toEdition == Edition.JAVA && voidIndex < 0) {
+                        voidIndex = outputIndex(simpleBlock(STRUCTURE_VOID));
+                    }
+                    if (toEdition == Edition.JAVA) {
+                        structure.blocks[i] = voidIndex;
+                    }
+                    continue;
+                }
+
+                structure.blocks[i] = remap[block];
+                if (toEdition == Edition.JAVA) {
+                    if (below >= 0 && below < paletteSize && water[below]) {
+                        if (waterloggedRemap == null) {
+                            waterloggedRemap = new int[paletteSize];
+                            Arrays.fill(waterloggedRemap, -1);
+                        }
+                        if (waterloggedRemap[block] < 0) {
+                            CompoundTag converted = convertBlock(
+                                structure.palette.get(block)
+                            );
+                            waterloggedRemap[block] = outputIndex(
+                                withWaterlogged(converted)
+                            );
+                        }
+                        structure.blocks[i] = waterloggedRemap[block];
+                    }
+                } else if (waterlogged[block]) {
+                    if (waterIndex < 0) {
+                        waterIndex = outputIndex(bedrockWater());
+                    }
+                    structure.secondary[i] = waterIndex;
+                } else if (below >= 0 && below < paletteSize) {
+                    structure.secondary[i] = remap[below];
+                }
+            }
+
+            List<Integer> positions = new ArrayList<>(
+                structure.blockEntities.keySet()
+            );
+            List<Outcome<CompoundTag>> blockEntities = ParallelExecutor.map(
+                positions,
+                ParallelExecutor.shouldParallelize(positions.size()),
+                index -> {
+                    CompoundTag input = structure.blockEntities.get(index);
+                    int[] pos = structure.position(index);
+                    input.put("x", pos[0]);
+                    input.put("y", pos[1]);
+                    input.put("z", pos[2]);
+                    CompoundTag output = BlockEntityConverter.convertPlaced(
+                        cache,
+                        fromEdition,
+                        toEdition,
+                        input
+                    );
+                    output.put("x", pos[0]);
+                    output.put("y", pos[1]);
+                    output.put("z", pos[2]);
+                    return output;
+                }
+            );
+            for (int i = 0; i < positions.size(); i++) {
+                Outcome<CompoundTag> outcome = blockEntities.get(i);
+                if (outcome.isSuccess()) {
+                    outputBlockEntities.put(positions.get(i), outcome.value());
+                } else {
+                    int[] pos = structure.position(positions.get(i));
+                    blockEntityFailures++;
+                    error(
+                        "blockEntity:" + pos[0] + "," + pos[1] + "," + pos[2],
+                        outcome.error()
+                    );
+                }
+            }
+
+            List<Outcome<CompoundTag>> entities = ParallelExecutor.map(
+                structure.entities,
+                ParallelExecutor.shouldParallelize(structure.entities.size()),
+                entity ->
+                    EntityConverter.convert(
+                        cache,
+                        fromEdition,
+                        toEdition,
+                        entity
+                    )
+            );
+            for (int i = 0; i < entities.size(); i++) {
+                Outcome<CompoundTag> outcome = entities.get(i);
+                if (
+                    outcome.isSuccess() &&
+                    toEdition == Edition.JAVA &&
+                    outcome.value().get("Pos") == null
+                ) {
+                    // Sponge schematics place entities by their Pos
+                    entityFailures++;
+                    error(
+                        "entity:" + i,
+                        new IllegalArgumentException("Entity has no 'Pos'")
+                    );
+                } else if (outcome.isSuccess()) {
+                    outputEntities.add(outcome.value());
+                } else {
+                    entityFailures++;
+                    error("entity:" + i, outcome.error());
+                }
+            }
+        }
+
+        private CompoundTag convertBlock(CompoundTag block) {
+            String key = blockKey(block);
+            CompoundTag converted = convertedBlocks.get(key);
+            if (converted != null) {
+                return converted;
+            }
+            try {
+                converted = BlockConverter.convert(
+                    cache,
+                    fromEdition,
+                    toEdition,
+                    block
+                );
+            } catch (Exception e) {
+                paletteFailures++;
+                error("palette:" + key, e);
+                converted = simpleBlock(AIR);
+            }
+            convertedBlocks.put(key, converted);
+            return converted;
+        }
+
+        private int outputIndex(CompoundTag block) {
+            return outputPaletteIndex.computeIfAbsent(blockKey(block), _ -> {
+                outputPalette.add(block);
+                return outputPalette.size() - 1;
+            });
+        }
+
+        private void error(String key, Throwable e) {
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.put(key, String.valueOf(e.getMessage()));
+            }
+        }
+
+        /**
+         * Write the structure as little-endian NBT. The block layers are
+         * streamed straight from the index arrays rather than built as tags,
+         * since they hold two entries per block.
+         */
+        byte[] writeMcstructure(Structure structure) throws IOException {
+            int blockVersion = bedrockBlockVersion(cache.bedrockVersion);
+            List<CompoundTag> palette = new ArrayList<>(outputPalette.size());
+            for (CompoundTag block : outputPalette) {
+                CompoundTag entry = new CompoundTag();
+                entry.put("name", block.getString("id"));
+                CompoundTag states = block.getCompound("states");
+                entry.put(
+                    "states",
+                    states != null ? states : new CompoundTag()
+                );
+                entry.put("version", blockVersion);
+                palette.add(entry);
+            }
+
+            CompoundTag positionData = new CompoundTag();
+            for (Map.Entry<
+                Integer,
+                CompoundTag
+            > entry : outputBlockEntities.entrySet()) {
+                CompoundTag position = new CompoundTag();
+                position.put("block_entity_data", entry.getValue());
+                positionData.put(String.valueOf(entry.getKey()), position);
+            }
+
+            CompoundTag defaultPalette = new CompoundTag();
+            defaultPalette.put(
+                "block_palette",
+                new ListTag<>(TagType.COMPOUND, palette)
+            );
+            defaultPalette.put("block_position_data", positionData);
+            CompoundTag palettes = new CompoundTag();
+            palettes.put("default", defaultPalette);
+
+            LittleEndianWriter writer = new LittleEndianWriter(
+                structure.blocks.length * 8 + 1024
+            );
+            writer.beginCompound("");
+            writer.intTag("format_version", 1);
+            writer.intList(
+                "size",
+                new int[] { structure.sizeX, structure.sizeY, structure.sizeZ }
+            );
+            writer.beginCompound("structure");
+            writer.listHeader("block_indices", TAG_LIST, 2);
+            writer.intListPayload(structure.blocks);
+            writer.intListPayload(structure.secondary);
+            writer.compoundList("entities", outputEntities);
+            writer.compound("palette", palettes);
+            writer.end();
+            writer.intList("structure_world_origin", new int[3]);
+            writer.end();
+            return writer.toByteArray();
+        }
+
+        CompoundTag writeSchematic(Structure structure) {
+            if (
+                structure.sizeX > MAX_SCHEMATIC_SIZE ||
+                structure.sizeY > MAX_SCHEMATIC_SIZE ||
+                structure.sizeZ > MAX_SCHEMATIC_SIZE
+            ) {
+                throw new IllegalArgumentException(
+                    "Structure size " +
+                        structure.sizeX +
+                        "x" +
+                        structure.sizeY +
+                        "x" +
+                        structure.sizeZ +
+                        " does not fit in a schematic"
+                );
+            }
+            CompoundTag palette = new CompoundTag();
+            for (int i = 0; i < outputPalette.size(); i++) {
+                palette.put(formatBlockState(outputPalette.get(i)), i);
+            }
+
+            ByteArrayOutputStream data = new ByteArrayOutputStream(
+                structure.blocks.length
+            );
+            for (int y = 0; y < structure.sizeY; y++) {
+                for (int z = 0; z < structure.sizeZ; z++) {
+                    for (int x = 0; x < structure.sizeX; x++) {
+                        int value = structure.blocks[structure.index(x, y, z)];
+                        while ((value & ~0x7F) != 0) {
+                            data.write((value & 0x7F) | 0x80);
+                            value >>>= 7;
+                        }
+                        data.write(value);
+                    }
+                }
+            }
+
+            List<CompoundTag> blockEntities = new ArrayList<>(
+                outputBlockEntities.size()
+            );
+            for (CompoundTag blockEntity : outputBlockEntities.values()) {
+                CompoundTag entry = new CompoundTag();
+                entry.put("Pos", new IntArrayTag(new int[] {
+                    blockEntity.getInt("x"),
+                    blockEntity.getInt("y"),
+                    blockEntity.getInt("z"),
+                }));
+                entry.put("Id", blockEntity.getString("id"));
+                entry.put("Data", stripKeys(blockEntity, "id", "x", "y", "z"));
+                blockEntities.add(entry);
+            }
+
+            List<CompoundTag> entities = new ArrayList<>(outputEntities.size());
+            for (CompoundTag entity : outputEntities) {
+                CompoundTag entry = new CompoundTag();
+                entry.put("Pos", entity.get("Pos"));
+                entry.put("Id", entity.getString("id"));
+                entry.put("Data", stripKeys(entity, "id"));
+                entities.add(entry);
+            }
+
+            CompoundTag blocks = new CompoundTag();
+            blocks.put("Palette", palette);
+            blocks.put("Data", new ByteArrayTag(data.toByteArray()));
+            blocks.put(
+                "BlockEntities",
+                new ListTag<>(TagType.COMPOUND, blockEntities)
+            );
+
+            CompoundTag schematic = new CompoundTag();
+            schematic.put("Version", SCHEMATIC_VERSION);
+            schematic.put(
+                "DataVersion",
+                VersionUtil.parseJavaVersion(
+                    cache.javaVersion
+                ).getDataVersion()
+            );
+            schematic.put("Width", (short) structure.sizeX);
+            schematic.put("Height", (short) structure.sizeY);
+            schematic.put("Length", (short) structure.sizeZ);
+            schematic.put("Offset", new IntArrayTag(new int[3]));
+            schematic.put("Blocks", blocks);
+            schematic.put(
+                "Entities",
+                new ListTag<>(TagType.COMPOUND, entities)
+            );
+
+            CompoundTag root = new CompoundTag();
+            root.put("Schematic", schematic);
+            return root;
+        }
+
+        CompoundTag summary() {
+            CompoundTag summary = new CompoundTag();
+            summary.put("paletteSize", outputPalette.size());
+            summary.put("blockEntities", outputBlockEntities.size());
+            summary.put("entities", outputEntities.size());
+            summary.put("paletteFailures", paletteFailures);
+            summary.put("blockEntityFailures", blockEntityFailures);
+            summary.put("entityFailures", entityFailures);
+            summary.put("errors", errors);
+            return summary;
+        }
+    }
+
+    private static CompoundTag simpleBlock(String id) {
+        CompoundTag block = new CompoundTag();
+        block.put("id", id);
+        return block;
+    }
+
+    private static CompoundTag bedrockWater() {
+        CompoundTag block = simpleBlock(WATER);
+        CompoundTag states = new CompoundTag();
+        states.put("liquid_depth", 0);
+        block.put("states", states);
+        return block;
+    }
+
+    private static boolean isWater(CompoundTag block) {
+        String id = block.getString("id");
+        return WATER.equals(id) || FLOWING_WATER.equals(id);
+    }
+
+    private static boolean isWaterlogged(CompoundTag block) {
+        CompoundTag states = block.getCompound("states");
+        return (
+            states != null &&
+            states.get("waterlogged") != null &&
+            "true".equals(
+                String.valueOf(states.get("waterlogged").getBoxedValue())
+            )
+        );
+    }
+
+    /**
+     * Copy of a converted Java block with its {@code waterlogged} state set,
+     * or the block itself if it cannot be waterlogged.
+     */
+    private static CompoundTag withWaterlogged(CompoundTag block) {
+        CompoundTag states = block.getCompound("states");
+        if (states == null || states.get("waterlogged") == null) {
+            return block;
+        }
+        CompoundTag copy = new CompoundTag();
+        CompoundTag copyStates = new CompoundTag();
+        for (Map.Entry<String, Tag<?>> entry : states) {
+            copyStates.put(entry.getKey(), entry.getValue());
+        }
+        if (states.get("waterlogged").getBoxedValue() instanceof Byte) {
+            copyStates.put("waterlogged", (byte) 1);
+        } else {
+            copyStates.put("waterlogged", "true");
+        }
+        copy.put("id", block.getString("id"));
+        copy.put("states", copyStates);
+        return copy;
+    }
+
+    /**
+     * Parse a Java block state string such as
+     * {@code minecraft:oak_stairs[facing=east,half=bottom]}.
+     */
+    private static CompoundTag parseBlockState(String state) {
+        CompoundTag block = new CompoundTag();
+        int open = state.indexOf('[');
+        if (open < 0 || !state.endsWith("]")) {
+            block.put("id", state);
+            return block;
+        }
+        block.put("id", state.substring(0, open));
+        CompoundTag states = new CompoundTag();
+        String properties = state.substring(open + 1, state.length() - 1);
+        for (String property : properties.split(",")) {
+            int equals = property.indexOf('=');
+            if (equals > 0) {
+                states.put(
+                    property.substring(0, equals),
+                    property.substring(equals + 1)
+                );
+            }
+        }
+        block.put("states", states);
+        return block;
+    }
+
+    private static String formatBlockState(CompoundTag block) {
+        CompoundTag states = block.getCompound("states");
+        if (states == null || states.size() == 0) {
+            return block.getString("id");
+        }
+        Map<String, String> sorted = new TreeMap<>();
+        for (Map.Entry<String, Tag<?>> entry : states) {
+            sorted.put(
+                entry.getKey(),
+                String.valueOf(entry.getValue().getBoxedValue())
+            );
+        }
+        StringBuilder builder = new StringBuilder(block.getString("id"))
+            .append('[');
+        sorted.forEach((key, value) -> {
+            if (builder.charAt(builder.length() - 1) != '[') {
+                builder.append(',');
+            }
+            builder.append(key).append('=').append(value);
+        });
+        return builder.append(']').toString();
+    }
+
+    /**
+     * Key identifying a converted or unconverted block, independent of the
+     * order its states were written in.
+     */
+    private static String blockKey(CompoundTag block) {
+        CompoundTag states = block.getCompound("states");
+        if (states == null || states.size() == 0) {
+            return block.getString("id");
+        }
+        Map<String, String> sorted = new TreeMap<>();
+        for (Map.Entry<String, Tag<?>> entry : states) {
+            Object value = entry.getValue().getBoxedValue();
+            sorted.put(
+                entry.getKey(),
+                value.getClass().getSimpleName() + ":" + value
+            );
+        }
+        return block.getString("id") + sorted;
+    }
+
+    private static CompoundTag stripKeys(CompoundTag source, String... keys) {
+        CompoundTag stripped = new CompoundTag();
+        outer:
+        for (Map.Entry<String, Tag<?>> entry : source) {
+            for (String key : keys) {
+                if (key.equals(entry.getKey())) {
+                    continue outer;
+                }
+            }
+            stripped.put(entry.getKey(), entry.getValue());
+        }
+        return stripped;
+    }
+
+    private static void offsetPosition(
+        CompoundTag entity,
+        double dx,
+        double dy,
+        double dz
+    ) {
+        if (!(entity.get("Pos") instanceof ListTag<?, ?> pos)) {
+            return;
+        }
+        double[] offsets = { dx, dy, dz };
+        List<FloatTag> floats = new ArrayList<>(3);
+        List<DoubleTag> doubles = new ArrayList<>(3);
+        int axis = 0;
+        for (Tag<?> component : pos) {
+            double value =
+                ((Number) component.getBoxedValue()).doubleValue() +
+                offsets[axis++];
+            if (component instanceof FloatTag) {
+                floats.add(new FloatTag((float) value));
+            } else {
+                doubles.add(new DoubleTag(value));
+            }
+        }
+        if (!floats.isEmpty()) {
+            entity.put("Pos", new ListTag<>(TagType.FLOAT, floats));
+        } else {
+            entity.put("Pos", new ListTag<>(TagType.DOUBLE, doubles));
+        }
+    }
+
+    private static List<CompoundTag> compounds(Tag<?> tag) {
+        List<CompoundTag> compounds = new ArrayList<>();
+        if (tag instanceof ListTag<?, ?> list) {
+            for (Tag<?> element : list) {
+                if (element instanceof CompoundTag compound) {
+                    compounds.add(compound);
+                }
+            }
+        }
+        return compounds;
+    }
+
+    private static CompoundTag requireCompound(CompoundTag parent, String key) {
+        CompoundTag compound = parent.getCompound(key);
+        if (compound == null) {
+            throw new IllegalArgumentException(
+                "Missing '" + key + "' compound in structure"
+            );
+        }
+        return compound;
+    }
+
+    private static int readInt(CompoundTag compound, String key) {
+        Tag<?> tag = compound.get(key);
+        if (tag == null) {
+            throw new IllegalArgumentException(
+                "Missing '" + key + "' field in structure"
+            );
+        }
+        // Sponge stores dimensions as unsigned shorts
+        return ((Number) tag.getBoxedValue()).intValue() & 0xFFFF;
+    }
+
+    private static int[] readInts(Tag<?> tag) {
+        if (tag instanceof IntArrayTag array) {
+            return array.getValue();
+        }
+        if (tag instanceof ListTag<?, ?> list) {
+            int[] values = new int[list.size()];
+            int i = 0;
+            for (Tag<?> element : list) {
+                values[i++] = ((Number) element.getBoxedValue()).intValue();
+            }
+            return values;
+        }
+        throw new IllegalArgumentException(
+            "Expected a list of integers in structure"
+        );
+    }
+
+    private static final byte TAG_END = 0;
+    private static final byte TAG_INT = 3;
+    private static final byte TAG_LIST = 9;
+    private static final byte TAG_COMPOUND = 10;
+
+    /**
+     * Minimal little-endian NBT writer for streaming large int lists.
+     * Compounds are written by serializing them with Chunker and splicing in
+     * their payload.
+     */
+    private static class LittleEndianWriter {
+
+        private final ByteArrayOutputStream out;
+
+        LittleEndianWriter(int capacity) {
+            this.out = new ByteArrayOutputStream(Math.max(capacity, 64));
+        }
+
+        void beginCompound(String name) {
+            header(TAG_COMPOUND, name);
+        }
+
+        void end() {
+            out.write(TAG_END);
+        }
+
+        void intTag(String name, int value) {
+            header(TAG_INT, name);
+            writeInt(value);
+        }
+
+        void intList(String name, int[] values) {
+            listHeader(name, TAG_INT, values.length);
+            for (int value : values) {
+                writeInt(value);
+            }
+        }
+
+        void listHeader(String name, byte elementType, int length) {
+            header(TAG_LIST, name);
+            out.write(elementType);
+            writeInt(length);
+        }
+
+        /** Write an unnamed int list as an element of a list of lists. */
+        void intListPayload(int[] values) {
+            out.write(TAG_INT);
+            writeInt(values.length);
+            for (int value : values) {
+                writeInt(value);
+            }
+        }
+
+        void compound(String name, CompoundTag compound) throws IOException {
+            header(TAG_COMPOUND, name);
+            writePayload(compound);
+        }
+
+        void compoundList(String name, List<CompoundTag> compounds)
+            throws IOException {
+            listHeader(name, TAG_COMPOUND, compounds.size());
+            for (CompoundTag compound : compounds) {
+                writePayload(compound);
+            }
+        }
+
+        byte[] toByteArray() {
+            return out.toByteArray();
+        }
+
+        private void writePayload(CompoundTag compound) throws IOException {
+            // Skip the root type byte and the length-prefixed root name
+            byte[] bytes = Tag.writeBedrockNBT(compound);
+            int nameLength = (bytes[1] & 0xFF) | ((bytes[2] & 0xFF) << 8);
+            int skip = 3 + nameLength;
+            out.write(bytes, skip, bytes.length - skip);
+        }
+
+        private void header(byte type, String name) {
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            out.write(type);
+            out.write(bytes.length & 0xFF);
+            out.write((bytes.length >>> 8) & 0xFF);
+            out.write(bytes, 0, bytes.length);
+        }
+
+        private void writeInt(int value) {
+            out.write(value & 0xFF);
+            out.write((value >>> 8) & 0xFF);
+            out.write((value >>> 16) & 0xFF);
+            out.write((value >>> 24) & 0xFF);
+        }
+    }
+
+    /**
+     * Bedrock palette entries carry the block version they were written
+     * with, packed as one byte each of major, minor, patch and revision.
+     */
+    private static int bedrockBlockVersion(String version) {
+        String[] parts = version.split("\\.");
+        int packed = 0;
+        for (int i = 0; i < 4; i++) {
+            int part = 0;
+            if (i < parts.length) {
+                try {
+                    part = Integer.parseInt(parts[i]);
+                } catch (NumberFormatException e) {
+                    // Treat unparseable components as zero
+                }
+            }
+            packed = (packed << 8) | (part & 0xFF);
+        }
+        return packed;
+    }
+}
@@ -0,0 +1,61 @@
+package games.orium.trace;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event emitted for sampled conversions, with one field per phase.
+ */
+@Name("games.orium.Conversion")
+@Label("Conversion")
+@Category("Crocon")
+@Description("A single request handled by ConversionService")
+@StackTrace(false)
+public class ConversionEvent extends jdk.jfr.Event {
+
+    @Label("Type")
+    String type;
+
+    @Label("From Edition")
+    String fromEdition;
+
+    @Label("To Edition")
+    String toEdition;
+
+    @Label("From Version")
+    String fromVersion;
+
+    @Label("To Version")
+    String toVersion;
+
+    @Label("Success")
+    boolean success;
+
+    @Label("Decode")
+    @Timespan(Timespan.NANOSECONDS)
+    long decode;
+
+    @Label("Parse")
+    @Timespan(Timespan.NANOSECONDS)
+    long parse;
+
+    @Label("Cache")
+    @Timespan(Timespan.NANOSECONDS)
+    long cache;
+
+    @Label("Convert")
+    @Timespan(Timespan.NANOSECONDS)
+    long convert;
+
+    @Label("Serialize")
+    @Timespan(Timespan.NANOSECONDS)
+    long serialize;
+
+    @Label("Copy")
+    @Timespan(Timespan.NANOSECONDS)
+    long copy;
+}
@@ -0,0 +1,246 @@
+package games.orium.trace;
+
+import com.hivemc.chunker.nbt.tags.collection.CompoundTag;
+import games.orium.util.Config;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jdk.jfr.Recording;
+import org.graalvm.nativeimage.CurrentIsolate;
+import org.graalvm.nativeimage.ImageInfo;
+
+/**
+ * Phase timings for a single conversion request.
+ * Timings are always recorded since they only cost a clock read per phase;
+ * whether they are returned, emitted as a JFR event or logged is decided per
+ * request.
+ */
+public class ConversionTrace {
+
+    public enum Phase {
+        DECODE("decode"),
+        PARSE("parse"),
+        CACHE("cache"),
+        CONVERT("convert"),
+        SERIALIZE("serialize"),
+        COPY("copy");
+
+        private final String name;
+
+        Phase(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    private static final Logger LOGGER = Logger.getLogger("games.orium.trace");
+    private static final Phase[] PHASES = Phase.values();
+    private static Recording recording;
+
+    static {
+        startRecordingIfConfigured();
+    }
+
+    private final String type;
+    private final long startNanos;
+    private final long[] phaseNanos = new long[PHASES.length];
+    private final ConversionEvent event;
+    private long lastNanos;
+    private String fromEdition;
+    private String toEdition;
+    private String fromVersion;
+    private String toVersion;
+    private boolean success;
+
+    private ConversionTrace(String type, boolean sampled) {
+        this.type = type;
+        if (sampled) {
+            this.event = new ConversionEvent();
+            this.event.begin();
+        } else {
+            this.event = null;
+        }
+        this.startNanos = System.nanoTime();
+        this.lastNanos = startNanos;
+    }
+
+    /**
+     * Start timing a request.
+     *
+     * @param type The kind of input being converted, e.g. "block".
+     * @return A new trace whose clock starts now.
+     */
+    public static ConversionTrace begin(String type) {
+        double rate = Config.TRACE_SAMPLE_RATE;
+        boolean sampled =
+            rate > 0 &&
+            (rate >= 1 || ThreadLocalRandom.current().nextDouble() < rate);
+        return new ConversionTrace(type, sampled);
+    }
+
+    /**
+     * Attribute the time since the previous mark to the given phase.
+     */
+    public void mark(Phase phase) {
+        long now = System.nanoTime();
+        phaseNanos[phase.ordinal()] += now - lastNanos;
+        lastNanos = now;
+    }
+
+    public void describe(
+        String fromEdition,
+        String toEdition,
+        String fromVersion,
+        String toVersion
+    ) {
+        this.fromEdition = fromEdition;
+        this.toEdition = toEdition;
+        this.fromVersion = fromVersion;
+        this.toVersion = toVersion;
+    }
+
+    public void setSuccess(boolean success) {
+        this.success = success;
+    }
+
+    /**
+     * Phase timings recorded so far, for inclusion in the response envelope.
+     * Serialization and the native copy happen after the envelope is built,
+     * so they are left out here and only reported through JFR and the
+     * slow-request log.
+     */
+    public CompoundTag toNBT() {
+        CompoundTag tag = new CompoundTag();
+        for (Phase phase : PHASES) {
+            if (phase == Phase.SERIALIZE || phase == Phase.COPY) {
+                continue;
+            }
+            tag.put(phase.getName() + "Nanos", phaseNanos[phase.ordinal()]);
+        }
+        tag.put("totalNanos", lastNanos - startNanos);
+        return tag;
+    }
+
+    /**
+     * Complete the trace, committing the JFR event if sampled and logging the
+     * request if it exceeded the slow-request threshold.
+     */
+    public void finish() {
+        long totalNanos = lastNanos - startNanos;
+
+        if (event != null) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.type = type;
+                event.fromEdition = fromEdition;
+                event.toEdition = toEdition;
+                event.fromVersion = fromVersion;
+                event.toVersion = toVersion;
+                event.success = success;
+                event.decode = phaseNanos[Phase.DECODE.ordinal()];
+                event.parse = phaseNanos[Phase.PARSE.ordinal()];
+                event.cache = phaseNanos[Phase.CACHE.ordinal()];
+                event.convert = phaseNanos[Phase.CONVERT.ordinal()];
+                event.serialize = phaseNanos[Phase.SERIALIZE.ordinal()];
+                event.copy = phaseNanos[Phase.COPY.ordinal()];
+                event.commit();
+            }
+        }
+
+        long slowMillis = Config.SLOW_REQUEST_MILLIS;
+        if (slowMillis > 0 && totalNanos >= slowMillis * 1_000_000L) {
+            LOGGER.warning(describeSlow(totalNanos));
+        }
+    }
+
+    private String describeSlow(long totalNanos) {
+        StringBuilder builder = new StringBuilder()
+            .append("Slow ")
+            .append(type)
+            .append(" conversion ")
+            .append(fromEdition)
+            .append(' ')
+            .append(fromVersion)
+            .append(" -> ")
+            .append(toEdition)
+            .append(' ')
+            .append(toVersion)
+            .append(success ? "" : " (failed)")
+            .append(": ")
+            .append(totalNanos / 1_000)
+            .append("us [");
+        for (Phase phase : PHASES) {
+            if (phase.ordinal() > 0) {
+                builder.append(", ");
+            }
+            builder
+                .append(phase.getName())
+                .append('=')
+                .append(phaseNanos[phase.ordinal()] / 1_000)
+                .append("us");
+        }
+        return builder.append(']').toString();
+    }
+
+    /**
+     * Stop the CROCON_JFR_FILE recording, if any, writing it to disk. Shutdown
+     * hooks do not run when a host tears down an isolate, so hosts call this
+     * through the prepare_tear_down entry point first.
+     */
+    public static synchronized void stopRecording() {
+        if (recording == null) {
+            return;
+        }
+        try {
+            // Stopping a recording with a destination writes it to disk
+            recording.stop();
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Failed to write JFR recording", e);
+        }
+        recording = null;
+    }
+
+    private static void startRecordingIfConfigured() {
+        String file = Config.JFR_FILE;
+        if (file == null || file.isBlank()) {
+            return;
+        }
+        try {
+            Recording started = new Recording();
+            started.setName("crocon");
+            started.enable(ConversionEvent.class);
+            started.setToDisk(true);
+            started.setDestination(Path.of(isolateFile(file)));
+            started.start();
+            recording = started;
+            Runtime.getRuntime().addShutdownHook(
+                new Thread(ConversionTrace::stopRecording)
+            );
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Failed to start JFR recording", e);
+        }
+    }
+
+    /**
+     * Insert the process and isolate ids before the file extension, so that
+     * isolates sharing a process, or a file name, write separate recordings.
+     */
+    private static String isolateFile(String file) {
+        if (!ImageInfo.inImageRuntimeCode()) {
+            return file;
+        }
+        String id =
+            ProcessHandle.current().pid() +
+            "-" +
+            Long.toHexString(CurrentIsolate.getIsolate().rawValue());
+        int dot = file.lastIndexOf('.');
+        if (dot <= file.lastIndexOf('/')) {
+            return file + "-" + id;
+        }
+        return file.substring(0, dot) + "-" + id + file.substring(dot);
+    }
+}
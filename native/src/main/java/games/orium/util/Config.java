@@ -0,0 +1,96 @@
+package games.orium.util;
+
+/**
+ * Runtime settings read from the environment of the hosting process when the
+ * isolate is created.
+ */
+public class Config {
+
+    /** Fraction of requests, between 0 and 1, that emit a JFR event. */
+    public static final double TRACE_SAMPLE_RATE = getDouble(
+        "CROCON_TRACE_SAMPLE_RATE",
+        0.0
+    );
+
+    /** Requests slower than this are logged; 0 disables slow-request logging. */
+    public static final long SLOW_REQUEST_MILLIS = getLong(
+        "CROCON_SLOW_REQUEST_MS",
+        0
+    );
+
+    /** When set, a JFR recording of conversion events is written to this file. */
+    public static final String JFR_FILE = System.getenv("CROCON_JFR_FILE");
+
+    /** Number of worker threads used for parallel multi-item conversions. */
+    public static final int PARALLELISM = (int) Math.max(
+        1,
+        getLong(
+            "CROCON_PARALLELISM",
+            Runtime.getRuntime().availableProcessors()
+        )
+    );
+
+    /** Whether CROCON_PARALLELISM was set, overriding the host's choice. */
+    public static final boolean PARALLELISM_SET =
+        System.getenv("CROCON_PARALLELISM") != null;
+
+    /** Multi-item operations with at least this many items run in parallel. */
+    public static final int PARALLEL_THRESHOLD = (int) getLong(
+        "CROCON_PARALLEL_THRESHOLD",
+        64
+    );
+
+    /**
+     * When enabled, requests for a version pair that is still being built
+     * wait at most {@link #WARMUP_WAIT_MILLIS} and then fail as warming.
+     */
+    public static final boolean ASYNC_WARMUP =
+        getLong("CROCON_ASYNC_WARMUP", 0) != 0;
+
+    /** How long a request waits for a cold version pair in async mode. */
+    public static final long WARMUP_WAIT_MILLIS = getLong(
+        "CROCON_WARMUP_WAIT_MS",
+        0
+    );
+
+    /**
+     * Whether to measure the heap retained by each version pair's resolvers,
+     * which forces two full collections per build.
+     */
+    public static final boolean MEASURE_FOOTPRINT =
+        getLong("CROCON_MEASURE_FOOTPRINT", 0) != 0;
+
+    /** Stack size of the threads that build resolvers, matching StackSize. */
+    public static final long RESOLVER_STACK_SIZE = getLong(
+        "CROCON_RESOLVER_STACK_SIZE",
+        50L * 1024 * 1024
+    );
+
+    private Config() {
+        // Private constructor to prevent instantiation
+    }
+
+    public static long getLong(String name, long defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    public static double getDouble(String name, double defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
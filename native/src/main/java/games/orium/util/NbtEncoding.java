@@ -0,0 +1,83 @@
+package games.orium.util;
+
+import com.hivemc.chunker.nbt.tags.Tag;
+import com.hivemc.chunker.nbt.tags.collection.CompoundTag;
+import java.io.IOException;
+
+/**
+ * Binary NBT encodings accepted and produced for conversion payloads.
+ */
+public enum NbtEncoding {
+    /** Bedrock edition disk format, little-endian with a named root. */
+    LITTLE_ENDIAN("little_endian"),
+    /** Java edition disk format, big-endian with a named root. */
+    BIG_ENDIAN("big_endian"),
+    /** Java edition network format, big-endian with an unnamed root. */
+    NETWORK_BIG_ENDIAN("network_big_endian");
+
+    private final String name;
+
+    NbtEncoding(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public static NbtEncoding fromString(String str) {
+        for (NbtEncoding e : values()) {
+            if (e.name.equalsIgnoreCase(str)) {
+                return e;
+            }
+        }
+        throw new IllegalArgumentException("Unknown NBT encoding: " + str);
+    }
+
+    public CompoundTag read(byte[] bytes) throws IOException {
+        return switch (this) {
+            case LITTLE_ENDIAN -> Tag.readBedrockNBT(bytes);
+            case BIG_ENDIAN -> Tag.readUncompressedJavaNBT(bytes);
+            case NETWORK_BIG_ENDIAN -> Tag.readUncompressedJavaNBT(
+                addRootName(bytes)
+            );
+        };
+    }
+
+    public byte[] write(CompoundTag tag) throws IOException {
+        return switch (this) {
+            case LITTLE_ENDIAN -> Tag.writeBedrockNBT(tag);
+            case BIG_ENDIAN -> Tag.writeUncompressedJavaNBT(tag);
+            case NETWORK_BIG_ENDIAN -> removeRootName(
+                Tag.writeUncompressedJavaNBT(tag)
+            );
+        };
+    }
+
+    /**
+     * Network NBT omits the root name, so splice in an empty one after the
+     * root type byte.
+     */
+    private static byte[] addRootName(byte[] bytes) {
+        if (bytes.length == 0) {
+            throw new IllegalArgumentException("Empty network NBT payload");
+        }
+        byte[] named = new byte[bytes.length + 2];
+        named[0] = bytes[0];
+        System.arraycopy(bytes, 1, named, 3, bytes.length - 1);
+        return named;
+    }
+
+    /**
+     * Drop the big-endian length-prefixed root name that follows the root
+     * type byte.
+     */
+    private static byte[] removeRootName(byte[] bytes) {
+        int nameLength = ((bytes[1] & 0xFF) << 8) | (bytes[2] & 0xFF);
+        int skip = 2 + nameLength;
+        byte[] unnamed = new byte[bytes.length - skip];
+        unnamed[0] = bytes[0];
+        System.arraycopy(bytes, 1 + skip, unnamed, 1, unnamed.length - 1);
+        return unnamed;
+    }
+}
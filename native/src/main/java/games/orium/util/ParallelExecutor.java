@@ -0,0 +1,188 @@
+package games.orium.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs multi-item conversions on a fork-join pool inside the isolate.
+ * Results keep the order of the input and a failing item only affects its
+ * own outcome.
+ */
+public class ParallelExecutor {
+
+    private static final long KEEP_ALIVE_SECONDS = 10;
+    private static volatile int parallelism = Config.PARALLELISM;
+    private static volatile ForkJoinPool pool;
+
+    private ParallelExecutor() {
+        // Private constructor to prevent instantiation
+    }
+
+    @FunctionalInterface
+    public interface ItemFunction<T, R> {
+        R apply(T item) throws Exception;
+    }
+
+    /**
+     * The result of converting a single item, holding either a value or the
+     * exception or error that was thrown.
+     */
+    public record Outcome<R>(R value, Throwable error) {
+        public boolean isSuccess() {
+            return error == null;
+        }
+    }
+
+    /**
+     * Set the number of pool threads, so that a host running several
+     * isolates can share the CPUs between them. Ignored if
+     * CROCON_PARALLELISM is set or the pool has already been started.
+     */
+    public static void setParallelism(int threads) {
+        synchronized (ParallelExecutor.class) {
+            if (!Config.PARALLELISM_SET && pool == null) {
+                parallelism = Math.max(1, threads);
+            }
+        }
+    }
+
+    /**
+     * Whether a multi-item operation of the given size should run in
+     * parallel when the caller did not ask for a specific mode.
+     */
+    public static boolean shouldParallelize(int items) {
+        return parallelism > 1 && items >= Config.PARALLEL_THRESHOLD;
+    }
+
+    /**
+     * Apply a function to every item. The function must not block on other
+     * work, such as a version pair that is still being built, since the pool
+     * does not add threads to make up for blocked workers.
+     *
+     * @param items    The items to convert.
+     * @param parallel Whether to split the work across the pool.
+     * @param function The conversion to apply to each item.
+     * @return One outcome per item, in input order.
+     */
+    public static <T, R> List<Outcome<R>> map(
+        List<T> items,
+        boolean parallel,
+        ItemFunction<T, R> function
+    ) {
+        @SuppressWarnings("unchecked")
+        Outcome<R>[] outcomes = new Outcome[items.size()];
+        if (!parallel || items.size() < 2 || parallelism <= 1) {
+            for (int i = 0; i < outcomes.length; i++) {
+                outcomes[i] = apply(function, items.get(i));
+            }
+        } else {
+            int grain = Math.max(1, items.size() / (parallelism * 4));
+            getPool().invoke(
+                new MapTask<>(items, outcomes, function, 0, items.size(), grain)
+            );
+        }
+        return new ArrayList<>(Arrays.asList(outcomes));
+    }
+
+    private static <T, R> Outcome<R> apply(
+        ItemFunction<T, R> function,
+        T item
+    ) {
+        try {
+            return new Outcome<>(function.apply(item), null);
+        } catch (StackOverflowError e) {
+            // Deep resolver recursion on one item; the stack is unwound by
+            // now, so the other items are unaffected
+            return new Outcome<>(null, e);
+        } catch (VirtualMachineError e) {
+            // Out of memory or internal errors leave the isolate unusable
+            throw e;
+        } catch (Throwable t) {
+            return new Outcome<>(null, t);
+        }
+    }
+
+    /**
+     * Stop the pool's worker threads. Shutdown hooks do not run when a host
+     * tears down an isolate, so hosts call this through prepare_tear_down.
+     */
+    public static void shutdown() {
+        synchronized (ParallelExecutor.class) {
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    private static ForkJoinPool getPool() {
+        ForkJoinPool current = pool;
+        if (current == null) {
+            synchronized (ParallelExecutor.class) {
+                current = pool;
+                if (current == null) {
+                    // Idle workers exit after the keep-alive; the host stops
+                    // the rest through shutdown() before tear-down
+                    current = new ForkJoinPool(
+                        parallelism,
+                        ForkJoinPool.defaultForkJoinWorkerThreadFactory,
+                        null,
+                        false,
+                        0,
+                        parallelism,
+                        1,
+                        null,
+                        KEEP_ALIVE_SECONDS,
+                        TimeUnit.SECONDS
+                    );
+                    pool = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private static class MapTask<T, R> extends RecursiveAction {
+
+        private final List<T> items;
+        private final Outcome<R>[] outcomes;
+        private final ItemFunction<T, R> function;
+        private final int from;
+        private final int to;
+        private final int grain;
+
+        MapTask(
+            List<T> items,
+            Outcome<R>[] outcomes,
+            ItemFunction<T, R> function,
+            int from,
+            int to,
+            int grain
+        ) {
+            this.items = items;
+            this.outcomes = outcomes;
+            this.function = function;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grain) {
+                for (int i = from; i < to; i++) {
+                    outcomes[i] = apply(function, items.get(i));
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(
+                new MapTask<>(items, outcomes, function, from, middle, grain),
+                new MapTask<>(items, outcomes, function, middle, to, grain)
+            );
+        }
+    }
+}
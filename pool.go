@@ -0,0 +1,149 @@
+package crocon
+
+/*
+#include "graal_isolate.h"
+#include "crocon.h"
+*/
+import "C"
+
+import (
+	"fmt"
+	"hash/fnv"
+	"runtime"
+)
+
+// affinityDepth is the number of requests that may queue for an isolate
+// before further requests for its version pairs spill over to whichever
+// isolate is idle first. Queuing a little at home avoids building a pair's
+// resolvers in a second isolate for a short burst. Requests are never taken
+// from another isolate's queue, so up to affinityDepth requests wait for their
+// home isolate even when others are idle.
+const affinityDepth = 2
+
+// isolateWorker owns one GraalVM isolate and the locked OS thread it runs on.
+type isolateWorker struct {
+	requests chan conversionRequest
+}
+
+// run is the heart of an isolate worker. It runs on a single, locked OS thread and is
+// responsible for all CGO calls into its GraalVM isolate. A parallelism above zero
+// sets the number of threads the isolate uses for multi-item conversions.
+func (w *isolateWorker) run(c *Converter, heapSize uint64, parallelism int, initChan chan<- error) {
+	// Lock the goroutine to its current OS thread. This is mandatory for GraalVM isolates.
+	runtime.LockOSThread()
+	defer runtime.UnlockOSThread()
+	defer c.workers.Done()
+
+	var params *C.graal_create_isolate_params_t
+	if heapSize > 0 {
+		// The isolate heap can never grow beyond its reserved address space.
+		params = &C.graal_create_isolate_params_t{
+			version:                     C.__graal_create_isolate_params_version,
+			reserved_address_space_size: C.__graal_uword(heapSize),
+		}
+	}
+
+	var isolate *C.graal_isolate_t
+	var thread *C.graal_isolatethread_t
+
+	if C.graal_create_isolate(params, &isolate, &thread) != 0 {
+		initChan <- fmt.Errorf("failed to create graalvm isolate")
+		return
+	}
+	// Ensure the isolate is torn down when the worker exits, after letting it
+	// write out anything its shutdown hooks would have.
+	defer C.graal_tear_down_isolate(thread)
+	defer C.prepare_tear_down(thread)
+
+	if parallelism > 0 {
+		C.set_parallelism(thread, C.int(parallelism))
+	}
+
+	// Signal that initialization was successful.
+	initChan <- nil
+
+	for {
+		// Prefer requests routed to this isolate, and only take spilled-over
+		// requests from the shared queue when there are none.
+		select {
+		case req := <-w.requests:
+			c.handle(w, thread, req)
+			continue
+		default:
+		}
+
+		select {
+		case req := <-w.requests:
+			c.handle(w, thread, req)
+		case req := <-c.shared:
+			c.handle(w, thread, req)
+		case <-c.shutdownChan:
+			w.drain(c)
+			return
+		}
+	}
+}
+
+// drain answers every request left in the isolate's queue, and any that are
+// waiting on the shared queue, with ErrClosed.
+func (w *isolateWorker) drain(c *Converter) {
+	for {
+		select {
+		case req := <-w.requests:
+			req.responseChan <- conversionResponse{err: ErrClosed}
+		case req := <-c.shared:
+			req.responseChan <- conversionResponse{err: ErrClosed}
+		default:
+			return
+		}
+	}
+}
+
+// handle executes a request, batching it with any other requests that are
+// already queued if it can be batched.
+func (c *Converter) handle(w *isolateWorker, thread *C.graal_isolatethread_t, req conversionRequest) {
+	if req.batch == nil || c.maxBatch <= 1 {
+		req.execute(thread)
+		return
+	}
+	batch, deferred := c.collectBatch(w, req)
+	c.executeBatch(thread, batch)
+	for _, req := range deferred {
+		req.execute(thread)
+	}
+}
+
+// execute runs the requested conversion function and sends back its result.
+func (req conversionRequest) execute(thread *C.graal_isolatethread_t) {
+	result, err := req.convertFunc(thread, req.payload)
+	req.responseChan <- conversionResponse{result: result, err: err}
+}
+
+// route picks the home isolate for a version pair, so that each pair's
+// resolvers are normally only built and kept warm in one isolate.
+func (c *Converter) route(fromVersion, toVersion string) *isolateWorker {
+	if len(c.isolates) == 1 {
+		return c.isolates[0]
+	}
+	h := fnv.New32a()
+	h.Write([]byte(fromVersion))
+	h.Write([]byte{0})
+	h.Write([]byte(toVersion))
+	return c.isolates[h.Sum32()%uint32(len(c.isolates))]
+}
+
+// submit queues a request on its home isolate. If the home queue is full the
+// request goes to the home isolate or the first idle isolate, whichever can
+// take it first.
+func (c *Converter) submit(home *isolateWorker, req conversionRequest) {
+	select {
+	case home.requests <- req:
+		return
+	default:
+	}
+
+	select {
+	case home.requests <- req:
+	case c.shared <- req:
+	}
+}
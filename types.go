@@ -1,6 +1,9 @@
 package crocon
 
-import "fmt"
+import (
+	"errors"
+	"fmt"
+)
 
 // Edition represents a Minecraft edition.
 type Edition string
@@ -12,6 +15,29 @@ const (
 	BedrockEdition Edition = "bedrock"
 )
 
+// Kind identifies the type of data being converted.
+type Kind string
+
+const (
+	KindBlock       Kind = "block"
+	KindItem        Kind = "item"
+	KindBiome       Kind = "biome"
+	KindEntity      Kind = "entity"
+	KindBlockEntity Kind = "block_entity"
+)
+
+// NBTEncoding is a binary NBT encoding accepted and produced by ConvertRaw.
+type NBTEncoding string
+
+const (
+	// LittleEndianNBT is the Bedrock edition disk format with a named root.
+	LittleEndianNBT NBTEncoding = "little_endian"
+	// BigEndianNBT is the Java edition disk format with a named root.
+	BigEndianNBT NBTEncoding = "big_endian"
+	// NetworkBigEndianNBT is the Java edition network format (1.20.2+) with an unnamed root.
+	NetworkBigEndianNBT NBTEncoding = "network_big_endian"
+)
+
 // ConversionRequest holds the common parameters for any conversion operation.
 // It is meant to be embedded in more specific request structs.
 type ConversionRequest struct {
@@ -48,6 +74,23 @@ type BlockEntity map[string]any
 
 // --- Request and Response Structs ---
 
+// RawRequest defines the parameters for converting NBT that is already encoded,
+// such as item or entity NBT taken straight off the wire. The native library
+// decodes Data with InputEncoding and returns the result in OutputEncoding, so
+// the caller does not need to transcode either side.
+type RawRequest struct {
+	ConversionRequest
+	// Data is the encoded NBT compound to convert.
+	Data []byte
+	// InputEncoding is the encoding of Data. It defaults to LittleEndianNBT.
+	InputEncoding NBTEncoding
+	// OutputEncoding is the encoding of the result. It defaults to InputEncoding.
+	OutputEncoding NBTEncoding
+	// Trace, if set, is filled with the time the request spent in each phase
+	// inside the native library.
+	Trace *Trace
+}
+
 // BlockRequest defines the parameters for a block conversion.
 type BlockRequest struct {
 	ConversionRequest
@@ -87,6 +130,111 @@ type BlockEntityRequest struct {
 	BlockEntity BlockEntity
 }
 
+// StructureRequest defines the parameters for converting a whole structure file.
+// Bedrock structures are .mcstructure files and Java structures are Sponge .schem
+// files. Set either Path or Payload as the input.
+type StructureRequest struct {
+	ConversionRequest
+	// Path is a structure file readable by the process hosting the library.
+	Path string
+	// Payload holds the raw structure file contents.
+	Payload []byte
+	// OutputPath, if set, is where the converted file is written instead of
+	// being returned in StructureResult.Payload.
+	OutputPath string
+	// Trace, if set, is filled with the time the request spent in each phase
+	// inside the native library.
+	Trace *Trace
+}
+
+// StructureResult holds the result of a structure conversion.
+type StructureResult struct {
+	// Format is the output file format, either "mcstructure" or "schem".
+	Format string `nbt:"format"`
+	// Path is the file the result was written to, if OutputPath was set.
+	Path string `nbt:"path,omitempty"`
+	// Payload holds the converted file contents if OutputPath was not set.
+	Payload []byte `nbt:"payload,omitempty"`
+	// PaletteSize is the number of distinct block states in the output.
+	PaletteSize int32 `nbt:"paletteSize"`
+	// BlockEntities and Entities are the number of converted entries.
+	BlockEntities int32 `nbt:"blockEntities"`
+	Entities      int32 `nbt:"entities"`
+	// PaletteFailures counts block states replaced with air, while
+	// BlockEntityFailures and EntityFailures count dropped entries.
+	PaletteFailures     int32 `nbt:"paletteFailures"`
+	BlockEntityFailures int32 `nbt:"blockEntityFailures"`
+	EntityFailures      int32 `nbt:"entityFailures"`
+	// Errors maps a failed entry to its error message, for the first 100 failures.
+	Errors map[string]string `nbt:"errors"`
+}
+
+// Trace holds the time, in nanoseconds, a request spent in each phase inside the
+// native library, up to building its response.
+type Trace struct {
+	// DecodeNanos is the time spent decoding the request from Base64.
+	DecodeNanos int64 `nbt:"decodeNanos"`
+	// ParseNanos is the time spent parsing the request NBT and its data.
+	ParseNanos int64 `nbt:"parseNanos"`
+	// CacheNanos is the time spent finding, or waiting for, the resolvers of
+	// the version pair.
+	CacheNanos int64 `nbt:"cacheNanos"`
+	// ConvertNanos is the time spent converting the data.
+	ConvertNanos int64 `nbt:"convertNanos"`
+	// TotalNanos is the sum of the phases above.
+	TotalNanos int64 `nbt:"totalNanos"`
+}
+
+// --- Introspection ---
+
+// MemoryStats describes the heap usage of the GraalVM isolate and the
+// approximate footprint of each version pair cached inside it.
+type MemoryStats struct {
+	// HeapUsed is the number of bytes currently in use on the isolate heap.
+	HeapUsed int64 `nbt:"heapUsed"`
+	// HeapCommitted is the number of bytes currently reserved for the isolate heap.
+	HeapCommitted int64 `nbt:"heapCommitted"`
+	// HeapMax is the maximum size the isolate heap may grow to.
+	HeapMax int64 `nbt:"heapMax"`
+	// CachesRetainedBytes is the sum of RetainedBytes across all cached version pairs.
+	CachesRetainedBytes int64 `nbt:"cachesRetainedBytes"`
+	// CachesWarming is the number of version pairs still being built.
+	CachesWarming int32 `nbt:"cachesWarming"`
+	// Caches holds per-version-pair statistics, keyed by "fromVersion:toVersion".
+	Caches map[string]CacheStats `nbt:"caches"`
+	// Isolates holds the statistics of each isolate when the converter has more
+	// than one, in which case the fields above are their totals.
+	Isolates []MemoryStats `nbt:"-"`
+}
+
+// CacheStats describes a single cached version pair inside the isolate.
+type CacheStats struct {
+	JavaVersion    string `nbt:"javaVersion"`
+	BedrockVersion string `nbt:"bedrockVersion"`
+	// RetainedBytes is the approximate heap retained by the pair's resolvers,
+	// measured when they were built. It is -1 unless the library was started
+	// with CROCON_MEASURE_FOOTPRINT=1.
+	RetainedBytes int64 `nbt:"retainedBytes"`
+	// BuildNanos is the time it took to build the pair's resolvers.
+	BuildNanos int64 `nbt:"buildNanos"`
+	// CachedBlocks is the number of block conversions the pair keeps to skip
+	// its resolvers for repeated block states.
+	CachedBlocks int32 `nbt:"cachedBlocks"`
+}
+
+// ResultCacheStats describes the converter's cache of decoded results.
+type ResultCacheStats struct {
+	// Hits and Misses count lookups that did and did not find a cached result.
+	Hits   uint64
+	Misses uint64
+	// Evictions counts results dropped to stay within Capacity.
+	Evictions uint64
+	// Entries is the number of results currently cached.
+	Entries int
+	// Capacity is the maximum number of cached results, or 0 if caching is disabled.
+	Capacity int
+}
+
 // --- Error Type ---
 
 // ConversionError represents an error returned from the Crocon native library.
@@ -96,9 +244,16 @@ type ConversionError struct {
 	Message string
 	// StackTrace is the full Java stack trace associated with the error.
 	StackTrace string
+	// Warming is true when the request's version pair is still being built in
+	// the background. The request can be retried once it is ready.
+	Warming bool
 }
 
 // Error returns the error message, satisfying the Go error interface.
 func (e *ConversionError) Error() string {
 	return fmt.Sprintf("crocon: conversion failed: %s", e.Message)
 }
+
+// ErrClosed is returned for requests made after the Converter was closed, and
+// for requests that were still queued when it was closed.
+var ErrClosed = errors.New("crocon: converter is closed")